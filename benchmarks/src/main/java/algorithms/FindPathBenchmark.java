@@ -0,0 +1,44 @@
+package algorithms;
+
+import benchmarks.ArenaState;
+import map.Cell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExplorationAlgo.findPath() from START to GOAL on the explored arena. In this package because findPath() is
+ * package-private.
+ */
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FindPathBenchmark {
+    private ExplorationAlgo exploration;
+    private Cell goal;
+
+    @Setup
+    public void setUp(ArenaState arena) {
+        exploration = new ExplorationAlgo(arena.exploredMap, arena.realMap, arena.bot, arena.exploredMap.getNumCells(), 3600);
+        goal = arena.exploredMap.getCell(arena.exploredMap.getGoalRow(), arena.exploredMap.getGoalCol());
+    }
+
+    @Benchmark
+    public ArrayList<Cell> findPath() {
+        return exploration.findPath(goal);
+    }
+}
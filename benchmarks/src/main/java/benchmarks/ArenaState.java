@@ -0,0 +1,78 @@
+package benchmarks;
+
+import map.Map;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import robot.Robot;
+import robot.RobotConstants;
+import utils.MapDescriptor;
+import utils.VirtualClock;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+// @formatter:off
+/**
+ * A loaded arena shared by the benchmarks: the real map, a fully explored copy of it, and a robot at START on a
+ * VirtualClock so that executing movements costs no real time.
+ *
+ * map is the name of a file in maps/, or random-N for an N x N arena with 3% of the cells as obstacles (fixed seed;
+ * GOAL is reachable from START for N = 100 and 500). The algorithms print a lot, so System.out is dropped in the
+ * benchmark JVM.
+ */
+// @formatter:on
+
+@State(Scope.Thread)
+public class ArenaState {
+    public static final double RANDOM_DENSITY = 0.03;
+    public static final long RANDOM_SEED = 42;
+
+    @Param({"BlankMap", "Map1", "Map2", "Map3", "SampleArena1", "SampleArena2", "SampleArena3", "SampleArena4",
+            "SampleArena5", "Week8", "Week9", "Week10", "Week11", "random-100", "random-500"})
+    public String map;
+
+    public Robot bot;
+    public Map realMap;
+    public Map exploredMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        bot = new Robot(RobotConstants.START_ROW, RobotConstants.START_COL, false);
+        bot.setClock(new VirtualClock());
+        bot.setSpeed(0);
+
+        if (map.startsWith("random-")) {
+            int size = Integer.parseInt(map.substring("random-".length()));
+            realMap = new Map(bot, size, size);
+            exploredMap = new Map(bot, size, size);
+            Random rnd = new Random(RANDOM_SEED);
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    if (rnd.nextDouble() < RANDOM_DENSITY) realMap.setObstacleCell(r, c, true);
+                }
+            }
+        } else {
+            realMap = new Map(bot);
+            exploredMap = new Map(bot);
+            MapDescriptor.loadMapFromDisk(realMap, map, exploredMap);
+        }
+        realMap.setAllExplored();
+        exploredMap.copyFrom(realMap);
+        exploredMap.setHeadless(true);
+        resetBot();
+    }
+
+    /**
+     * Puts the robot back at START facing START_DIR.
+     */
+    public void resetBot() {
+        bot.setRobotPos(exploredMap.getStartRow(), exploredMap.getStartCol());
+        bot.setRobotDir(RobotConstants.START_DIR);
+    }
+}
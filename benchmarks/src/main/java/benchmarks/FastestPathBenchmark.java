@@ -0,0 +1,30 @@
+package benchmarks;
+
+import algorithms.FastestPathAlgo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FastestPathAlgo.runFastestPath() from START to GOAL on the explored arena, including executing the movements.
+ */
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastestPathBenchmark {
+    @Benchmark
+    public String runFastestPath(ArenaState arena) {
+        arena.resetBot();
+        FastestPathAlgo fastestPath = new FastestPathAlgo(arena.exploredMap, arena.bot);
+        return fastestPath.runFastestPath(arena.exploredMap.getGoalRow(), arena.exploredMap.getGoalCol());
+    }
+}
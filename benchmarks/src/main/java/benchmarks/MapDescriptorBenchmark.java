@@ -0,0 +1,59 @@
+package benchmarks;
+
+import map.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.MapDescriptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapDescriptor encoding and decoding of the explored arena: generateMapDescriptor(), appending both parts to a
+ * reused StringBuilder, and loadMapDescriptor() into a second map.
+ */
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapDescriptorBenchmark {
+    private final StringBuilder buf = new StringBuilder();
+    private String[] descriptor;
+    private Map decoded;
+
+    @Setup
+    public void setUp(ArenaState arena) {
+        descriptor = MapDescriptor.generateMapDescriptor(arena.exploredMap);
+        decoded = new Map(arena.bot, arena.exploredMap.getRows(), arena.exploredMap.getCols());
+    }
+
+    @Benchmark
+    public String[] generateMapDescriptor(ArenaState arena) {
+        return MapDescriptor.generateMapDescriptor(arena.exploredMap);
+    }
+
+    @Benchmark
+    public int appendMapDescriptor(ArenaState arena) {
+        buf.setLength(0);
+        MapDescriptor.appendPart1(arena.exploredMap, buf);
+        buf.append(' ');
+        MapDescriptor.appendPart2(arena.exploredMap, buf);
+        return buf.length();
+    }
+
+    @Benchmark
+    public Map loadMapDescriptor() {
+        MapDescriptor.loadMapDescriptor(decoded, descriptor[0], descriptor[1]);
+        return decoded;
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import map.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.MapArchive;
+import utils.MapDescriptor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading an arena: MapDescriptor.loadMapFromDisk() of a text map in maps/ against MapArchive.load() of the same map
+ * from an archive of all the maps.
+ */
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapLoadBenchmark {
+    private static final String[] MAPS = {"BlankMap", "Map1", "Map2", "Map3", "SampleArena1", "SampleArena2",
+            "SampleArena3", "SampleArena4", "SampleArena5", "Week8", "Week9", "Week10", "Week11"};
+
+    private Path file;
+    private MapArchive archive;
+    private Map realMap;
+    private Map exploredMap;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        realMap = new Map(null);
+        exploredMap = new Map(null);
+        file = Files.createTempFile("maps", ".mdpa");
+        try (MapArchive.Writer writer = new MapArchive.Writer(file, realMap.getRows(), realMap.getCols())) {
+            for (String name : MAPS) {
+                MapDescriptor.loadMapFromDisk(realMap, name, exploredMap);
+                writer.add(realMap);
+            }
+        }
+        archive = MapArchive.open(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Map loadMapFromDisk() {
+        next = (next + 1) % MAPS.length;
+        MapDescriptor.loadMapFromDisk(realMap, MAPS[next], exploredMap);
+        return realMap;
+    }
+
+    @Benchmark
+    public Map loadFromArchive() {
+        next = (next + 1) % MAPS.length;
+        archive.load(next, realMap, exploredMap);
+        return realMap;
+    }
+}
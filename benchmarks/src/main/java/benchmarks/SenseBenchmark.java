@@ -0,0 +1,79 @@
+package benchmarks;
+
+import map.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import robot.RobotConstants.DIRECTION;
+import robot.SensorFootprint;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Robot.setSensors() and Robot.sense() at every pose the robot can stand in, one pose per call in turn, and
+ * SensorFootprint.countUnexplored() of the same poses on an unexplored map, as the next-best-view planner does.
+ */
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SenseBenchmark {
+    private static final DIRECTION[] DIRECTIONS = DIRECTION.values();
+
+    private int[] poses;        // packed (row * cols + col) * 4 + dir
+    private int next;
+    private SensorFootprint footprint;
+    private Map unexplored;
+
+    @Setup
+    public void setUp(ArenaState arena) {
+        int cols = arena.exploredMap.getCols();
+        int count = 0;
+        int[] all = new int[arena.exploredMap.getNumCells() * 4];
+        for (int r = 0; r < arena.exploredMap.getRows(); r++) {
+            for (int c = 0; c < cols; c++) {
+                if (!arena.exploredMap.isVisitableCell(r, c)) continue;
+                for (DIRECTION d : DIRECTION.values()) {
+                    all[count++] = (r * cols + c) * 4 + d.ordinal();
+                }
+            }
+        }
+        poses = Arrays.copyOf(all, count);
+
+        footprint = new SensorFootprint(arena.bot.getRadius(), arena.exploredMap.getRows(), cols);
+        unexplored = new Map(arena.bot, arena.exploredMap.getRows(), cols);
+        unexplored.setHeadless(true);
+    }
+
+    @Benchmark
+    public int[] sense(ArenaState arena) {
+        int pose = poses[next];
+        next = (next + 1) % poses.length;
+
+        int cols = arena.exploredMap.getCols();
+        arena.bot.setRobotPos(pose / 4 / cols, pose / 4 % cols);
+        arena.bot.setRobotDir(DIRECTIONS[pose % 4]);
+        arena.bot.setSensors();
+        return arena.bot.sense(arena.exploredMap, arena.realMap);
+    }
+
+    @Benchmark
+    public int countUnexplored(ArenaState arena) {
+        int pose = poses[next];
+        next = (next + 1) % poses.length;
+
+        int cols = arena.exploredMap.getCols();
+        return footprint.countUnexplored(unexplored, pose / 4 / cols, pose / 4 % cols, DIRECTIONS[pose % 4]);
+    }
+}
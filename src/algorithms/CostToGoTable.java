@@ -0,0 +1,224 @@
+package algorithms;
+
+import map.Map;
+import robot.RobotConstants;
+import robot.RobotConstants.DIRECTION;
+import robot.RobotConstants.MOVEMENT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+// @formatter:off
+/**
+ * Cost-to-go field towards a fixed target, computed with a reverse Dijkstra over (row, col, DIRECTION) states.
+ *
+ * cost(s) = cheapest cost from state s to the target, using the same FORWARD / RIGHT / LEFT costs as
+ *           FastestPathAlgo. Getting to the target from any cell and heading is then a walk down the table.
+ *
+ * Tables towards START and GOAL are cached per Map and reused until Map.getVersion() changes, i.e. until an obstacle,
+ * a virtual wall or the explored state of a visitable cell changes.
+ */
+// @formatter:on
+
+public class CostToGoTable {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final WeakHashMap<Map, ArrayList<CostToGoTable>> cache = new WeakHashMap<>();
+
+    private final int rows;
+    private final int cols;
+    private final int targetRow;
+    private final int targetCol;
+    private final DIRECTION targetDir;      // null if the target can be reached in any direction
+    private final int version;              // Map.getVersion() when the table was built
+    private final int[] costs;              // state index --> cost to the target
+
+    private CostToGoTable(Map map, int targetRow, int targetCol, DIRECTION targetDir) {
+        this.rows = map.getRows();
+        this.cols = map.getCols();
+        this.targetRow = targetRow;
+        this.targetCol = targetCol;
+        this.targetDir = targetDir;
+        this.version = map.getVersion();
+        this.costs = new int[map.getNumCells() * 4];
+    }
+
+    /**
+     * Returns the cached table towards [row, col] in any direction, rebuilding it if the map changed since.
+     */
+    public static CostToGoTable get(Map map, int row, int col) {
+        synchronized (cache) {
+            ArrayList<CostToGoTable> tables = cache.computeIfAbsent(map, k -> new ArrayList<>());
+            for (int i = 0; i < tables.size(); i++) {
+                CostToGoTable t = tables.get(i);
+                if (t.targetRow == row && t.targetCol == col) {
+                    if (t.version == map.getVersion()) return t;
+                    tables.remove(i);
+                    break;
+                }
+            }
+
+            CostToGoTable t = compute(map, row, col, null);
+            tables.add(t);
+            return t;
+        }
+    }
+
+    /**
+     * Builds an uncached table towards [row, col]. If dir is not null the robot has to end facing dir.
+     */
+    public static CostToGoTable compute(Map map, int row, int col, DIRECTION dir) {
+        CostToGoTable t = new CostToGoTable(map, row, col, dir);
+        t.build(map);
+        return t;
+    }
+
+    public int getTargetRow() {
+        return targetRow;
+    }
+
+    public int getTargetCol() {
+        return targetCol;
+    }
+
+    /**
+     * Returns the cost from [row, col] facing dir to the target, or UNREACHABLE.
+     */
+    public int getCost(int row, int col, DIRECTION dir) {
+        return costs[toState(row, col, dir)];
+    }
+
+    /**
+     * Returns the movements that take the robot from [row, col] facing dir to the target, or null if it is
+     * unreachable.
+     */
+    public ArrayList<MOVEMENT> walk(int row, int col, DIRECTION dir) {
+        int state = toState(row, col, dir);
+        if (costs[state] == UNREACHABLE) return null;
+
+        ArrayList<MOVEMENT> movements = new ArrayList<>();
+        while (costs[state] != 0) {
+            int next = nextState(state);
+            if (next / 4 != state / 4) {
+                movements.add(MOVEMENT.FORWARD);
+            } else if (DIRECTION.getNext(DIRECTION.values()[state % 4]).ordinal() == next % 4) {
+                movements.add(MOVEMENT.RIGHT);
+            } else {
+                movements.add(MOVEMENT.LEFT);
+            }
+            state = next;
+        }
+        return movements;
+    }
+
+    /**
+     * Returns the direction the robot faces on reaching the target from [row, col] facing dir, or null if it is
+     * unreachable.
+     */
+    public DIRECTION getArrivalDir(int row, int col, DIRECTION dir) {
+        int state = toState(row, col, dir);
+        if (costs[state] == UNREACHABLE) return null;
+
+        while (costs[state] != 0) {
+            state = nextState(state);
+        }
+        return DIRECTION.values()[state % 4];
+    }
+
+    /**
+     * Returns the next state on a cheapest route from the given state. Prefers FORWARD, then the turn that keeps the
+     * remaining cost consistent with the table.
+     */
+    private int nextState(int state) {
+        int cell = state / 4;
+        DIRECTION d = DIRECTION.values()[state % 4];
+
+        int fwd = forwardCell(cell, d, 1);
+        if (fwd != -1 && costs[fwd * 4 + d.ordinal()] == costs[state] - RobotConstants.MOVE_COST) {
+            return fwd * 4 + d.ordinal();
+        } else if (costs[cell * 4 + DIRECTION.getNext(d).ordinal()] == costs[state] - RobotConstants.TURN_COST) {
+            return cell * 4 + DIRECTION.getNext(d).ordinal();
+        }
+        return cell * 4 + DIRECTION.getPrevious(d).ordinal();
+    }
+
+    /**
+     * Reverse Dijkstra from the target state(s). An edge u --> v is relaxed from v's side, so for each popped state
+     * the predecessors are: one cell behind in the same direction (FORWARD), and the two states on the same cell
+     * that turn into it.
+     */
+    private void build(Map map) {
+        Arrays.fill(costs, UNREACHABLE);
+
+        boolean[] visitable = new boolean[rows * cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                visitable[r * cols + c] = map.isVisitableCell(r, c);
+            }
+        }
+
+        int targetCell = targetRow * cols + targetCol;
+        if (!visitable[targetCell]) return;
+
+        IndexedPriorityQueue open = new IndexedPriorityQueue(costs.length);
+        for (DIRECTION d : DIRECTION.values()) {
+            if (targetDir == null || targetDir == d) {
+                costs[targetCell * 4 + d.ordinal()] = 0;
+                open.insert(targetCell * 4 + d.ordinal(), 0);
+            }
+        }
+
+        while (!open.isEmpty()) {
+            int state = open.poll();
+            int cell = state / 4;
+            DIRECTION d = DIRECTION.values()[state % 4];
+            int cost = costs[state];
+
+            int back = forwardCell(cell, d, -1);
+            if (back != -1 && visitable[back]) {
+                relax(open, back * 4 + d.ordinal(), cost + RobotConstants.MOVE_COST);
+            }
+            relax(open, cell * 4 + DIRECTION.getPrevious(d).ordinal(), cost + RobotConstants.TURN_COST);
+            relax(open, cell * 4 + DIRECTION.getNext(d).ordinal(), cost + RobotConstants.TURN_COST);
+        }
+    }
+
+    private void relax(IndexedPriorityQueue open, int state, int cost) {
+        if (cost >= costs[state]) return;
+        costs[state] = cost;
+        if (open.contains(state)) {
+            open.decreaseKey(state, cost);
+        } else {
+            open.insert(state, cost);
+        }
+    }
+
+    private int toState(int row, int col, DIRECTION dir) {
+        return (row * cols + col) * 4 + dir.ordinal();
+    }
+
+    /**
+     * Returns the packed index of the cell `steps` cells from the given cell in direction d, or -1 if outside.
+     */
+    private int forwardCell(int cell, DIRECTION d, int steps) {
+        int row = cell / cols;
+        int col = cell % cols;
+        switch (d) {
+            case NORTH:
+                row += steps;
+                break;
+            case EAST:
+                col += steps;
+                break;
+            case SOUTH:
+                row -= steps;
+                break;
+            case WEST:
+                col -= steps;
+                break;
+        }
+        if (row < 0 || col < 0 || row >= rows || col >= cols) return -1;
+        return row * cols + col;
+    }
+}
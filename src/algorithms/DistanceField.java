@@ -0,0 +1,123 @@
+package algorithms;
+
+import map.Cell;
+import map.Map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// @formatter:off
+/**
+ * Breadth-first distance field (in moves) from one source cell to every cell of the map.
+ *
+ * One call to compute() answers the reachability and distance of any number of target cells, and getPath() backtracks
+ * a shortest path to any of them without searching again.
+ *
+ * A cell can be entered if it is neither an obstacle nor a virtual wall. Unexplored cells count as free, so paths may
+ * lead over unknown ground. With setExploredFootprint(), a cell can only be entered if every cell of the robot's
+ * footprint around it is explored as well.
+ */
+// @formatter:on
+
+public class DistanceField {
+    public static final int UNREACHABLE = -1;
+
+    private static final int[] ROW_MOV = {1, 0, -1, 0};
+    private static final int[] COL_MOV = {0, 1, 0, -1};
+
+    private final Map map;
+    private final int cols;
+    private final int[] dist;           // packed cell index --> distance from the source
+    private final int[] queue;
+    private int footprint = -1;         // radius of the footprint that must be explored, -1 if not needed
+    private int sourceRow;
+    private int sourceCol;
+
+    public DistanceField(Map map) {
+        this.map = map;
+        this.cols = map.getCols();
+        this.dist = new int[map.getNumCells()];
+        this.queue = new int[map.getNumCells()];
+    }
+
+    /**
+     * Only lets the field enter cells whose footprint of the given radius (see Robot.getRadius()) is explored.
+     */
+    public void setExploredFootprint(int radius) {
+        this.footprint = radius;
+    }
+
+    /**
+     * Fills the field with the distances from [row, col].
+     */
+    public void compute(int row, int col) {
+        this.sourceRow = row;
+        this.sourceCol = col;
+        Arrays.fill(dist, UNREACHABLE);
+
+        int head = 0;
+        int tail = 0;
+        int source = row * cols + col;
+        dist[source] = 0;
+        queue[tail++] = source;
+
+        while (head < tail) {
+            int cur = queue[head++];
+            int curRow = cur / cols;
+            int curCol = cur % cols;
+            for (int i = 0; i < 4; i++) {
+                int nextRow = curRow + ROW_MOV[i];
+                int nextCol = curCol + COL_MOV[i];
+                if (!map.checkValidCoordinates(nextRow, nextCol)) continue;
+
+                int next = nextRow * cols + nextCol;
+                if (dist[next] != UNREACHABLE || !canEnter(nextRow, nextCol)) continue;
+
+                dist[next] = dist[cur] + 1;
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    private boolean canEnter(int row, int col) {
+        if (footprint >= 0) {
+            if (!map.checkValidCoordinates(row - footprint, col - footprint)
+                    || !map.checkValidCoordinates(row + footprint, col + footprint)) return false;
+            for (int r = row - footprint; r <= row + footprint; r++) {
+                if (!map.isRowExplored(r, col - footprint, col + footprint)) return false;
+            }
+        }
+        return !map.isObstacleCell(row, col) && !map.isVirtualWallCell(row, col);
+    }
+
+    /**
+     * Returns the number of moves from the source to [row, col], or UNREACHABLE.
+     */
+    public int getDistance(int row, int col) {
+        return dist[row * cols + col];
+    }
+
+    /**
+     * Returns a shortest path to [row, col], ordered from [row, col] back to the source, or null if unreachable.
+     */
+    public ArrayList<Cell> getPath(int row, int col) {
+        if (getDistance(row, col) == UNREACHABLE) return null;
+
+        ArrayList<Cell> path = new ArrayList<>();
+        path.add(map.getCell(row, col));
+        while (row != sourceRow || col != sourceCol) {
+            int d = getDistance(row, col);
+            for (int i = 0; i < 4; i++) {
+                int prevRow = row + ROW_MOV[i];
+                int prevCol = col + COL_MOV[i];
+                if (map.checkValidCoordinates(prevRow, prevCol) && getDistance(prevRow, prevCol) == d - 1) {
+                    row = prevRow;
+                    col = prevCol;
+                    break;
+                }
+            }
+            path.add(map.getCell(row, col));
+        }
+        return path;
+    }
+}
@@ -6,20 +6,41 @@ import robot.Robot;
 import robot.RobotConstants;
 import robot.RobotConstants.DIRECTION;
 import robot.RobotConstants.MOVEMENT;
+import robot.SensorFootprint;
 import utils.CommMgr;
-import map.MapConstants;
 
 import java.lang.reflect.Array;
 import java.util.*;
 
+// @formatter:off
 /**
  * Exploration algorithm for the robot.
  *
+ * The robot first hugs the wall on its left until it is back where it started. If the arena is not covered by then,
+ * it picks where to go next by its Strategy:
+ *
+ * NEAREST_CELL: the unexplored cell nearest to the robot by Manhattan distance, which may not be reachable.
+ * FRONTIER:     the frontier cell (see Map.isFrontierCell()) that the robot can sense from a pose the fewest moves
+ *               away, by one DistanceField over the cells with a fully explored footprint. The robot goes there,
+ *               turns to face the cell and senses. Exploration ends once no frontier cell can be sensed from
+ *               anywhere reachable.
+ *
+ * NEXT_BEST_VIEW skips the wall hug. Every pose (cell & direction) the robot can reach is scored by the number of
+ * unexplored cells its six sensors would look at from there (see SensorFootprint.countUnexplored()), divided by the
+ * cost of getting there (MOVE_COST per cell plus an estimate of the turns). The robot heads for the best pose, stops
+ * early once the pose has nothing left to see, and plans again. Exploration ends once no reachable pose would see an
+ * unexplored cell.
+ *
  * @author Priyanshu Singh
  * @author Suyash Lakhotia
  */
+// @formatter:on
 
 public class ExplorationAlgo {
+    public enum Strategy {
+        NEAREST_CELL, FRONTIER, NEXT_BEST_VIEW
+    }
+
     private final Map exploredMap;
     private final Map realMap;
     private final Robot bot;
@@ -32,17 +53,40 @@ public class ExplorationAlgo {
     private boolean calibrationMode;
     private ArrayList<Cell> unExploredCells;
     private boolean imageRun = true;
+    private boolean imageTour = true;     // plan all image poses at once instead of going to the nearest surface
     HashMap<String, ObsSurface> notYetTaken;
     List<ObsSurface> notAccessibleSurface;
+    private final DistanceField imageField;
+    private Strategy strategy = Strategy.FRONTIER;
+    private final DistanceField frontierField;
+    private final boolean[] givenUp;      // cell index --> frontier cell that stayed unexplored after going to sense it
+    private boolean[] viewGivenUp;        // cell index * 4 + direction --> pose that still had cells to see after going there
 
 
 
     public ExplorationAlgo(Map exploredMap, Map realMap, Robot bot, int coverageLimit, int timeLimit) {
+        if (bot.getRadius() != MapConstants.ROBOT_RADIUS) {
+            throw new IllegalArgumentException("Exploration needs a robot radius of " + MapConstants.ROBOT_RADIUS + ", not " + bot.getRadius()
+                    + ": the front sensors cannot see the cells between them on a wider footprint");
+        }
         this.exploredMap = exploredMap;
         this.realMap = realMap;
         this.bot = bot;
         this.coverageLimit = coverageLimit;
         this.timeLimit = timeLimit;
+        this.imageField = new DistanceField(exploredMap);
+        this.frontierField = new DistanceField(exploredMap);
+        this.frontierField.setExploredFootprint(bot.getRadius());
+        this.givenUp = new boolean[exploredMap.getNumCells()];
+        bot.setGoal(exploredMap.getGoalRow(), exploredMap.getGoalCol());
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
     }
 
     /**
@@ -52,34 +96,30 @@ public class ExplorationAlgo {
         if (bot.getRealBot()) {
             System.out.println("Starting calibration...");
 
-            CommMgr.getCommMgr().recvMsg();
+            CommMgr.getCommMgr().recvMsg(CommMgr.SENSOR_DATA);
             if (bot.getRealBot()) {
                 bot.move(MOVEMENT.LEFT, false);
-                CommMgr.getCommMgr().recvMsg();
+                CommMgr.getCommMgr().recvMsg(CommMgr.SENSOR_DATA);
                 bot.move(MOVEMENT.CALIBRATE, false);
-                CommMgr.getCommMgr().recvMsg();
+                CommMgr.getCommMgr().recvMsg(CommMgr.SENSOR_DATA);
                 bot.move(MOVEMENT.LEFT, false);
-                CommMgr.getCommMgr().recvMsg();
+                CommMgr.getCommMgr().recvMsg(CommMgr.SENSOR_DATA);
                 bot.move(MOVEMENT.CALIBRATE, false);
-                CommMgr.getCommMgr().recvMsg();
+                CommMgr.getCommMgr().recvMsg(CommMgr.SENSOR_DATA);
                 bot.move(MOVEMENT.RIGHT, false);
-                CommMgr.getCommMgr().recvMsg();
+                CommMgr.getCommMgr().recvMsg(CommMgr.SENSOR_DATA);
                 bot.move(MOVEMENT.CALIBRATE, false);
-                CommMgr.getCommMgr().recvMsg();
+                CommMgr.getCommMgr().recvMsg(CommMgr.SENSOR_DATA);
                 bot.move(MOVEMENT.RIGHT, false);
             }
 
-            while (true) {
-                System.out.println("Waiting for EX_START...");
-                String msg = CommMgr.getCommMgr().recvMsg();
-                String[] msgArr = msg.split(";");
-                if (msgArr[0].equals(CommMgr.EX_START)) break;
-            }
+            System.out.println("Waiting for EX_START...");
+            CommMgr.getCommMgr().recvMsg(CommMgr.EX_START);
         }
 
         System.out.println("Starting exploration...");
 
-        startTime = System.currentTimeMillis();
+        startTime = bot.getClock().currentTimeMillis();
         endTime = startTime + (timeLimit * 1000);
 
         if (bot.getRealBot()) {
@@ -87,7 +127,7 @@ public class ExplorationAlgo {
         }
         senseAndRepaint();
 
-        areaExplored = calculateAreaExplored();
+        areaExplored = exploredMap.getExploredCount();
         System.out.println("Explored Area: " + areaExplored);
 
         explorationLoop(bot.getRobotPosRow(), bot.getRobotPosCol());
@@ -97,21 +137,28 @@ public class ExplorationAlgo {
      * Loops through robot movements until one (or more) of the following conditions is met:
      * 1. Robot is back at (r, c)
      * 2. areaExplored > coverageLimit
-     * 3. System.currentTimeMillis() > endTime
+     * 3. The robot's clock is past endTime
      */
     private void explorationLoop(int r, int c) {
         boolean hugCompleted = false;
         do {
-            if (!hugCompleted){
+            if (strategy == Strategy.NEXT_BEST_VIEW) {
+                if (!exploreNextBestView()) break;
+            }
+            else if (!hugCompleted){
                 nextMove();
             }
+            else if (strategy == Strategy.FRONTIER) {
+                if (!exploreFrontier()) break;
+            }
             else {
                 Cell nearestCell = calcNearest();
                 ArrayList<Cell> path = findPath(nearestCell);
                 if (path == null) {
                     boolean foundCandidate = false;
                     Cell nextcandidateCell = null;
-                    for (int i = -2; i <= 2; i+=4) {
+                    int reach = bot.getRadius() + 1;
+                    for (int i = -reach; i <= reach; i += 2 * reach) {
                         Cell candidateCell = exploredMap.getCell(nearestCell.getRow() + i, nearestCell.getCol());
                         if (candidateCell.getIsExplored() && !(candidateCell.getIsVirtualWall() || candidateCell.getIsObstacle())) {
                             foundCandidate = true;
@@ -120,7 +167,7 @@ public class ExplorationAlgo {
                         }
                     }
                     if (!foundCandidate) {
-                        for (int i = -2; i <= 2; i+=4) {
+                        for (int i = -reach; i <= reach; i += 2 * reach) {
                             Cell candidateCell = exploredMap.getCell(nearestCell.getRow(), nearestCell.getCol() + i);
                             if (!(candidateCell.getIsExplored() && (candidateCell.getIsVirtualWall() || candidateCell.getIsObstacle()))) {
                                 foundCandidate = true;
@@ -138,7 +185,7 @@ public class ExplorationAlgo {
                 }
             }
 
-            areaExplored = calculateAreaExplored();
+            areaExplored = exploredMap.getExploredCount();
             System.out.println("Area explored: " + areaExplored);
 
 //            if (bot.getRobotPosRow() == r && bot.getRobotPosCol() == c) {
@@ -149,7 +196,7 @@ public class ExplorationAlgo {
             if (bot.getRobotPosRow() == r && bot.getRobotPosCol() == c) {
                 hugCompleted = true;
             }
-        } while (areaExplored < coverageLimit && System.currentTimeMillis() <= endTime);
+        } while (areaExplored < coverageLimit && bot.getClock().currentTimeMillis() <= endTime);
         System.out.println("AreaExplored: " + areaExplored);
         System.out.println("coverageLimit: " + coverageLimit);
 
@@ -180,16 +227,19 @@ public class ExplorationAlgo {
 
             while (notYetTaken.size() > 0) {
                 System.out.println("image loop");
-                imageLoop();
+                if (imageTour) {
+                    imageTour();
+                } else {
+                    imageLoop();
+                }
                 exploredMap.repaint();
-                // TODO
             }
             System.out.println("Finished, now printing unaccessible ones");
             exploredMap.setNotYetTakenList(notAccessibleSurface);
             exploredMap.repaint();
 
             FastestPathAlgo returnToStart = new FastestPathAlgo(exploredMap, bot);
-            returnToStart.runFastestPath(RobotConstants.START_ROW, RobotConstants.START_COL);
+            returnToStart.runFastestPath(exploredMap.getStartRow(), exploredMap.getStartCol());
 
             exploredMap.repaint();
         }
@@ -215,15 +265,150 @@ public class ExplorationAlgo {
         }
     }
 
+    /**
+     * Goes to the pose fewest moves away from which a frontier cell can be sensed, turns to face the cell and senses.
+     * Returns false if there is no such pose.
+     *
+     * A frontier cell can be sensed by the front sensors from any pose whose footprint it touches from the side
+     * (reach cells from the centre and at most 1 cell across), so those are the poses considered for each cell.
+     */
+    private boolean exploreFrontier() {
+        frontierField.compute(bot.getRobotPosRow(), bot.getRobotPosCol());
+        int cols = exploredMap.getCols();
+        int reach = bot.getRadius() + 1;
+
+        int bestDist = Integer.MAX_VALUE;
+        int target = -1;
+        int poseRow = -1;
+        int poseCol = -1;
+        for (int f = exploredMap.nextFrontierCell(0); f >= 0; f = exploredMap.nextFrontierCell(f + 1)) {
+            if (givenUp[f]) continue;
+            int row = f / cols;
+            int col = f % cols;
+            for (int across = -1; across <= 1; across++) {
+                for (int side = 0; side < 4; side++) {
+                    int r = row + (side == 0 ? -reach : side == 1 ? reach : across);
+                    int c = col + (side == 2 ? -reach : side == 3 ? reach : across);
+                    if (!exploredMap.checkValidCoordinates(r, c)) continue;
+                    int dist = frontierField.getDistance(r, c);
+                    if (dist == DistanceField.UNREACHABLE || dist >= bestDist) continue;
+
+                    bestDist = dist;
+                    target = f;
+                    poseRow = r;
+                    poseCol = c;
+                }
+            }
+        }
+        if (target < 0) return false;
+
+        Cell targetCell = exploredMap.getCell(target / cols, target % cols);
+        System.out.println("Frontier: " + targetCell.getRow() + " " + targetCell.getCol() + " from " + poseRow + " " + poseCol);
+        goToNearest(targetCell, frontierField.getPath(poseRow, poseCol), false);
+
+        if (!targetCell.getIsExplored()) {
+            int dRow = targetCell.getRow() - bot.getRobotPosRow();
+            int dCol = targetCell.getCol() - bot.getRobotPosCol();
+            if (dRow == reach) {
+                turnBotDirection(DIRECTION.NORTH);
+            } else if (dRow == -reach) {
+                turnBotDirection(DIRECTION.SOUTH);
+            } else if (dCol == reach) {
+                turnBotDirection(DIRECTION.EAST);
+            } else if (dCol == -reach) {
+                turnBotDirection(DIRECTION.WEST);
+            }
+        }
+        if (!targetCell.getIsExplored()) givenUp[target] = true;
+        return true;
+    }
+
+    /**
+     * Goes towards the reachable pose with the most unexplored cells to sense per unit of cost, and senses from it.
+     * Returns false if no reachable pose would sense an unexplored cell.
+     */
+    private boolean exploreNextBestView() {
+        int botRow = bot.getRobotPosRow();
+        int botCol = bot.getRobotPosCol();
+        DIRECTION botDir = bot.getRobotCurDir();
+        frontierField.compute(botRow, botCol);
+        SensorFootprint footprint = bot.getSensorFootprint(exploredMap.getRows(), exploredMap.getCols());
+        if (viewGivenUp == null) viewGivenUp = new boolean[exploredMap.getNumCells() * DIRECTION.values().length];
+
+        double bestScore = 0;
+        int poseRow = -1;
+        int poseCol = -1;
+        DIRECTION poseDir = null;
+        for (int r = 0; r < exploredMap.getRows(); r++) {
+            for (int c = 0; c < exploredMap.getCols(); c++) {
+                int dist = frontierField.getDistance(r, c);
+                if (dist == DistanceField.UNREACHABLE) continue;
+
+                // The robot arrives heading roughly the way of the straight line to the pose.
+                DIRECTION heading = botDir;
+                if (Math.abs(r - botRow) > Math.abs(c - botCol)) {
+                    heading = r > botRow ? DIRECTION.NORTH : DIRECTION.SOUTH;
+                } else if (c != botCol) {
+                    heading = c > botCol ? DIRECTION.EAST : DIRECTION.WEST;
+                }
+                for (DIRECTION d : DIRECTION.values()) {
+                    if (viewGivenUp[(r * exploredMap.getCols() + c) * 4 + d.ordinal()]) continue;
+                    int gain = footprint.countUnexplored(exploredMap, r, c, d);
+                    if (gain == 0) continue;
+
+                    int cost = dist * RobotConstants.MOVE_COST
+                            + (numOfTurns(botDir, heading) + numOfTurns(heading, d)) * RobotConstants.TURN_COST;
+                    double score = (double) gain / Math.max(cost, 1);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        poseRow = r;
+                        poseCol = c;
+                        poseDir = d;
+                    }
+                }
+            }
+        }
+        if (poseDir == null) return false;
+
+        System.out.println("Next best view: " + poseRow + " " + poseCol + " " + poseDir);
+        ArrayList<Cell> path = frontierField.getPath(poseRow, poseCol);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Cell nextCell = path.get(i);
+            while (bot.getRobotPosRow() != nextCell.getRow() || bot.getRobotPosCol() != nextCell.getCol()) {
+                DIRECTION targetDir = getTargetDir(bot.getRobotPosRow(), bot.getRobotPosCol(), bot.getRobotCurDir(), nextCell);
+                if (bot.getRobotCurDir() != targetDir) {
+                    moveBot(getTargetMove(bot.getRobotCurDir(), targetDir));
+                } else {
+                    moveBot(MOVEMENT.FORWARD);
+                }
+            }
+            if (footprint.countUnexplored(exploredMap, poseRow, poseCol, poseDir) == 0) return true;
+        }
+
+        turnBotDirection(poseDir);
+        if (footprint.countUnexplored(exploredMap, poseRow, poseCol, poseDir) > 0) {
+            viewGivenUp[(poseRow * exploredMap.getCols() + poseCol) * 4 + poseDir.ordinal()] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of 90 degree turns between two directions.
+     */
+    private static int numOfTurns(DIRECTION a, DIRECTION b) {
+        int n = Math.abs(a.ordinal() - b.ordinal());
+        return n == 3 ? 1 : n;
+    }
+
     /**
      * If full coverage not reached after one round of hugging, find the nearest cell by manhattan distance
      */
     private Cell calcNearest() {
         unExploredCells = new ArrayList<>();
-        int minDist = 50;
+        int minDist = exploredMap.getRows() + exploredMap.getCols();
         Cell nearestCell = null;
-        for (int i = 0; i < MapConstants.MAP_ROWS; i++) {
-            for (int j = 0; j < MapConstants.MAP_COLS; j++) {
+        for (int i = 0; i < exploredMap.getRows(); i++) {
+            for (int j = 0; j < exploredMap.getCols(); j++) {
                 Cell currentCell = exploredMap.getCell(i, j);
                 if (!currentCell.getIsExplored()) {
                     unExploredCells.add(currentCell);
@@ -241,12 +426,12 @@ public class ExplorationAlgo {
     /**
      *  Return the shortest path from current path to cell c
      */
-    private ArrayList<Cell> findPath(Cell c) {
+    ArrayList<Cell> findPath(Cell c) {
         int[] rowmov = {1, 0, -1, 0};
         int[] colmov = {0, 1, 0, -1};
-        int[][] dist = new int[MapConstants.MAP_ROWS][MapConstants.MAP_COLS];
-        for (int i = 0; i < MapConstants.MAP_ROWS; i++) {
-            for (int j = 0; j < MapConstants.MAP_COLS; j++) {
+        int[][] dist = new int[exploredMap.getRows()][exploredMap.getCols()];
+        for (int i = 0; i < exploredMap.getRows(); i++) {
+            for (int j = 0; j < exploredMap.getCols(); j++) {
                 dist[i][j] = -1;
             }
         }
@@ -261,7 +446,7 @@ public class ExplorationAlgo {
             for (int i = 0; i < 4; i++){
                 int nextrow = current.getRow() + rowmov[i];
                 int nextcol = current.getCol() + colmov[i];
-                if (nextcol >= 0 && nextrow >= 0 && nextcol < MapConstants.MAP_COLS && nextrow < MapConstants.MAP_ROWS) {
+                if (nextcol >= 0 && nextrow >= 0 && nextcol < exploredMap.getCols() && nextrow < exploredMap.getRows()) {
                     if (dist[nextrow][nextcol] == -1) {
                         Cell nextCell = exploredMap.getCell(nextrow, nextcol);
                         if (nextCell.getIsExplored() && (nextCell.getIsVirtualWall() || nextCell.getIsObstacle())) {
@@ -285,7 +470,7 @@ public class ExplorationAlgo {
             for (int i = 0; i < 4; i++) {
                 int nextrow = current.getRow() + rowmov[i];
                 int nextcol = current.getCol() + colmov[i];
-                if (nextcol >= 0 && nextrow >= 0 && nextcol <= MapConstants.MAP_COLS && nextrow <= MapConstants.MAP_ROWS) {
+                if (nextcol >= 0 && nextrow >= 0 && nextcol <= exploredMap.getCols() && nextrow <= exploredMap.getRows()) {
                     if (dist[nextrow][nextcol] == dist[current.getRow()][current.getCol()] - 1) {
                         current = exploredMap.getCell(nextrow, nextcol);
                         path.add(current);
@@ -468,7 +653,7 @@ public class ExplorationAlgo {
     private boolean northFree() {
         int botRow = bot.getRobotPosRow();
         int botCol = bot.getRobotPosCol();
-        return (isExploredNotObstacle(botRow + 1, botCol - 1) && isExploredAndFree(botRow + 1, botCol) && isExploredNotObstacle(botRow + 1, botCol + 1));
+        return isRowFree(botRow + 1, botCol);
     }
 
     /**
@@ -477,7 +662,7 @@ public class ExplorationAlgo {
     private boolean eastFree() {
         int botRow = bot.getRobotPosRow();
         int botCol = bot.getRobotPosCol();
-        return (isExploredNotObstacle(botRow - 1, botCol + 1) && isExploredAndFree(botRow, botCol + 1) && isExploredNotObstacle(botRow + 1, botCol + 1));
+        return isColFree(botRow, botCol + 1);
     }
 
     /**
@@ -486,7 +671,31 @@ public class ExplorationAlgo {
     private boolean southFree() {
         int botRow = bot.getRobotPosRow();
         int botCol = bot.getRobotPosCol();
-        return (isExploredNotObstacle(botRow - 1, botCol - 1) && isExploredAndFree(botRow - 1, botCol) && isExploredNotObstacle(botRow - 1, botCol + 1));
+        return isRowFree(botRow - 1, botCol);
+    }
+
+    /**
+     * Returns true if the cells of the given row across the robot's footprint, centred on col, are explored and not
+     * obstacles, and the centre one is not a virtual wall. Tests the whole row at once on the map's bit planes.
+     */
+    private boolean isRowFree(int row, int col) {
+        int radius = bot.getRadius();
+        if (!exploredMap.checkValidCoordinates(row, col - radius) || !exploredMap.checkValidCoordinates(row, col + radius)) {
+            return false;
+        }
+        return exploredMap.isRowExplored(row, col - radius, col + radius) && !exploredMap.hasObstacleInRow(row, col - radius, col + radius)
+                && !exploredMap.isVirtualWallCell(row, col);
+    }
+
+    /**
+     * Same as isRowFree() for the cells of the given column across the robot's footprint, centred on row.
+     */
+    private boolean isColFree(int row, int col) {
+        int radius = bot.getRadius();
+        for (int r = row - radius; r <= row + radius; r++) {
+            if (!isExploredNotObstacle(r, col)) return false;
+        }
+        return isExploredAndFree(row, col);
     }
 
     /**
@@ -495,7 +704,7 @@ public class ExplorationAlgo {
     private boolean westFree() {
         int botRow = bot.getRobotPosRow();
         int botCol = bot.getRobotPosCol();
-        return (isExploredNotObstacle(botRow - 1, botCol - 1) && isExploredAndFree(botRow, botCol - 1) && isExploredNotObstacle(botRow + 1, botCol - 1));
+        return isColFree(botRow, botCol - 1);
     }
 
     /**
@@ -503,19 +712,19 @@ public class ExplorationAlgo {
      */
     private void goHome() {
         System.out.println("goHome now");
-        if (!bot.getTouchedGoal() && coverageLimit == 300 && timeLimit == 3600) {
-            FastestPathAlgo goToGoal = new FastestPathAlgo(exploredMap, bot, realMap);
-            goToGoal.runFastestPath(RobotConstants.GOAL_ROW, RobotConstants.GOAL_COL);
+        if (!bot.getTouchedGoal() && coverageLimit == exploredMap.getNumCells() && timeLimit == 3600) {
+            IncrementalPathAlgo goToGoal = new IncrementalPathAlgo(exploredMap, bot, realMap);
+            goToGoal.runFastestPath(exploredMap.getGoalRow(), exploredMap.getGoalCol());
         }
 
-        FastestPathAlgo returnToStart = new FastestPathAlgo(exploredMap, bot, realMap);
-        returnToStart.runFastestPath(RobotConstants.START_ROW, RobotConstants.START_COL);
+        IncrementalPathAlgo returnToStart = new IncrementalPathAlgo(exploredMap, bot, realMap);
+        returnToStart.runFastestPath(exploredMap.getStartRow(), exploredMap.getStartCol());
 
         System.out.println("Exploration complete!");
-        areaExplored = calculateAreaExplored();
-        System.out.printf("%.2f%% Coverage", (areaExplored / 300.0) * 100.0);
+        areaExplored = exploredMap.getExploredCount();
+        System.out.printf("%.2f%% Coverage", (areaExplored / (double) exploredMap.getNumCells()) * 100.0);
         System.out.println(", " + areaExplored + " Cells");
-        System.out.println((System.currentTimeMillis() - startTime) / 1000 + " Seconds");
+        System.out.println((bot.getClock().currentTimeMillis() - startTime) / 1000 + " Seconds");
 
         if (bot.getRealBot()) {
             turnBotDirection(DIRECTION.WEST);
@@ -530,19 +739,19 @@ public class ExplorationAlgo {
 
     // correct implementation of go home
     private void goHome2() {
-        if (!bot.getTouchedGoal() && coverageLimit == 300 && timeLimit == 3600) {
-            FastestPathAlgo goToGoal = new FastestPathAlgo(exploredMap, bot, realMap);
-            goToGoal.runFastestPath(RobotConstants.GOAL_ROW, RobotConstants.GOAL_COL);
+        if (!bot.getTouchedGoal() && coverageLimit == exploredMap.getNumCells() && timeLimit == 3600) {
+            IncrementalPathAlgo goToGoal = new IncrementalPathAlgo(exploredMap, bot, realMap);
+            goToGoal.runFastestPath(exploredMap.getGoalRow(), exploredMap.getGoalCol());
         }
 
         FastestPathAlgo returnToStart = new FastestPathAlgo(exploredMap, bot);
-        returnToStart.runFastestPath(RobotConstants.START_ROW, RobotConstants.START_COL);
+        returnToStart.runFastestPath(exploredMap.getStartRow(), exploredMap.getStartCol());
 
         System.out.println("Exploration complete!");
-        areaExplored = calculateAreaExplored();
-        System.out.printf("%.2f%% Coverage", (areaExplored / 300.0) * 100.0);
+        areaExplored = exploredMap.getExploredCount();
+        System.out.printf("%.2f%% Coverage", (areaExplored / (double) exploredMap.getNumCells()) * 100.0);
         System.out.println(", " + areaExplored + " Cells");
-        System.out.println((System.currentTimeMillis() - startTime) / 1000 + " Seconds");
+        System.out.println((bot.getClock().currentTimeMillis() - startTime) / 1000 + " Seconds");
 
         if (bot.getRealBot()) {
             turnBotDirection(DIRECTION.WEST);
@@ -561,8 +770,7 @@ public class ExplorationAlgo {
      */
     private boolean isExploredNotObstacle(int r, int c) {
         if (exploredMap.checkValidCoordinates(r, c)) {
-            Cell tmp = exploredMap.getCell(r, c);
-            return (tmp.getIsExplored() && !tmp.getIsObstacle());
+            return exploredMap.isExploredCell(r, c) && !exploredMap.isObstacleCell(r, c);
         }
         return false;
     }
@@ -572,27 +780,11 @@ public class ExplorationAlgo {
      */
     private boolean isExploredAndFree(int r, int c) {
         if (exploredMap.checkValidCoordinates(r, c)) {
-            Cell b = exploredMap.getCell(r, c);
-            return (b.getIsExplored() && !b.getIsVirtualWall() && !b.getIsObstacle());
+            return exploredMap.isVisitableCell(r, c);
         }
         return false;
     }
 
-    /**
-     * Returns the number of cells explored in the grid.
-     */
-    private int calculateAreaExplored() {
-        int result = 0;
-        for (int r = 0; r < MapConstants.MAP_ROWS; r++) {
-            for (int c = 0; c < MapConstants.MAP_COLS; c++) {
-                if (exploredMap.getCell(r, c).getIsExplored()) {
-                    result++;
-                }
-            }
-        }
-        return result;
-    }
-
     /**
      * Moves the bot, repaints the map and calls senseAndRepaint().
      * Calibration: can
@@ -604,7 +796,7 @@ public class ExplorationAlgo {
             senseAndRepaint();
         } else {
             CommMgr commMgr = CommMgr.getCommMgr();
-            commMgr.recvMsg();
+            commMgr.recvMsg(CommMgr.SENSOR_DATA);
         }
 
         if (bot.getRealBot()&& !calibrationMode){
@@ -659,40 +851,42 @@ public class ExplorationAlgo {
     }
 
     /**
-     * Checks if the robot can calibrate at its current position given a direction.
+     * Checks if the robot can calibrate at its current position given a direction: against the two outer cells of the
+     * footprint-wide strip just to its left or, failing that, just ahead of it.
      */
     private MOVEMENT canCalibrateOnTheSpot(DIRECTION botDir) {
         int row = bot.getRobotPosRow();
         int col = bot.getRobotPosCol();
+        int reach = bot.getRadius() + 1;
+        DIRECTION left = DIRECTION.getPrevious(botDir);
 
-        switch (botDir) {
-            case NORTH: {
-                if(exploredMap.getIsObstacleOrWall(row + 1, col - 2) && exploredMap.getIsObstacleOrWall(row - 1, col - 2))
-                    return MOVEMENT.LEFT_CALIBRATE;
-                if(exploredMap.getIsObstacleOrWall(row + 2, col - 1) && exploredMap.getIsObstacleOrWall(row + 2, col + 1))
-                    return MOVEMENT.FRONT_CALIBRATE;
-            }
-            case EAST:
-                if(exploredMap.getIsObstacleOrWall(row + 2, col + 1) && exploredMap.getIsObstacleOrWall(row + 2, col - 1))
-                    return MOVEMENT.LEFT_CALIBRATE;
-                if(exploredMap.getIsObstacleOrWall(row + 1, col + 2) && exploredMap.getIsObstacleOrWall(row - 1, col + 2))
-                    return MOVEMENT.FRONT_CALIBRATE;
-
-            case SOUTH:
-                if(exploredMap.getIsObstacleOrWall(row + 1, col + 2) && exploredMap.getIsObstacleOrWall(row - 1, col + 2))
-                    return MOVEMENT.LEFT_CALIBRATE;
-                if(exploredMap.getIsObstacleOrWall(row - 2, col - 1) && exploredMap.getIsObstacleOrWall(row - 2, col + 1))
-                    return MOVEMENT.FRONT_CALIBRATE;
-            case WEST:
-                if(exploredMap.getIsObstacleOrWall(row - 2, col + 1) && exploredMap.getIsObstacleOrWall(row - 2, col - 1))
-                    return MOVEMENT.LEFT_CALIBRATE;
-                if(exploredMap.getIsObstacleOrWall(row + 1, col - 2) && exploredMap.getIsObstacleOrWall(row - 1, col - 2))
-                    return MOVEMENT.FRONT_CALIBRATE;
-        }
+        if (isObstacleOrWallPair(row + rowStep(left) * reach, col + colStep(left) * reach, botDir))
+            return MOVEMENT.LEFT_CALIBRATE;
+        if (isObstacleOrWallPair(row + rowStep(botDir) * reach, col + colStep(botDir) * reach, left))
+            return MOVEMENT.FRONT_CALIBRATE;
 
         return null;
     }
 
+    /**
+     * Returns true if both cells one robot radius either side of [row, col] along the given direction are obstacles or
+     * outside the arena.
+     */
+    private boolean isObstacleOrWallPair(int row, int col, DIRECTION along) {
+        int radius = bot.getRadius();
+        int dRow = rowStep(along) * radius;
+        int dCol = colStep(along) * radius;
+        return exploredMap.getIsObstacleOrWall(row + dRow, col + dCol) && exploredMap.getIsObstacleOrWall(row - dRow, col - dCol);
+    }
+
+    private static int rowStep(DIRECTION d) {
+        return d == DIRECTION.NORTH ? 1 : d == DIRECTION.SOUTH ? -1 : 0;
+    }
+
+    private static int colStep(DIRECTION d) {
+        return d == DIRECTION.EAST ? 1 : d == DIRECTION.WEST ? -1 : 0;
+    }
+
 //    /**
 //     * Returns a possible direction for robot calibration or null, otherwise.
 //     */
@@ -743,12 +937,16 @@ public class ExplorationAlgo {
         }
     }
 
+    /**
+     * Returns true if the robot's footprint is in one of the four corners of the arena.
+     */
     private boolean atMazeCorner(){
+        int radius = bot.getRadius();
         int row = bot.getRobotPosRow();
         int col = bot.getRobotPosCol();
-        if (((row == 2)&&(col == 2)) || ((row == MapConstants.MAP_ROWS -1 )&&(col == 2)) || ((row == MapConstants.MAP_ROWS -1 )&&(col == MapConstants.MAP_COLS -1)) || ((row == 2 )&&(col == MapConstants.MAP_COLS -1)) )
-            return true;
-        return false;
+        boolean atEdgeRow = row == radius || row == exploredMap.getRows() - 1 - radius;
+        boolean atEdgeCol = col == radius || col == exploredMap.getCols() - 1 - radius;
+        return atEdgeRow && atEdgeCol;
     }
 
     public HashMap<String, ObsSurface> getAllObsSurfaces() {
@@ -758,8 +956,8 @@ public class ExplorationAlgo {
         ObsSurface tempObsSurface;
         HashMap<Direction, Cell> tempNeighbours;
         HashMap<String, ObsSurface> allPossibleSurfaces = new HashMap<String, ObsSurface>();
-        for (int row = 0; row < MapConstants.MAP_ROWS; row++) {
-            for (int col = 0; col < MapConstants.MAP_COLS; col++) {
+        for (int row = 0; row < exploredMap.getRows(); row++) {
+            for (int col = 0; col < exploredMap.getCols(); col++) {
                 tempCell = exploredMap.getCell(row, col);
 
                 if (tempCell.getIsObstacle()) {
@@ -786,44 +984,64 @@ public class ExplorationAlgo {
         List<ObsSurface> coverage = exploredMap.getSurfaceCoverage();
 
         if(coverage!=null) {
-            System.out.println(coverage.size());
-            int count = 0;
-
             for (ObsSurface tempObsSurfaceStr : coverage) {
-                count+=1;
-                System.out.println(count);
-                System.out.println("entered getUntakenSurfaces");
                 removeFromNotYetTaken(tempObsSurfaceStr);
-                System.out.println(coverage.size());
             }
-            System.out.println("finished getUntakenSurfaces");
         }
         return this.notYetTaken;
     }
 
+    /**
+     * Visits the poses planned by an ImageTourPlanner in order, taking an image at each. Surfaces that cannot be
+     * seen from anywhere reachable are marked as not accessible.
+     */
+    private void imageTour() {
+        ImageTourPlanner planner = new ImageTourPlanner(exploredMap);
+        List<Waypoint> poses = planner.plan(bot.getRobotPosRow(), bot.getRobotPosCol(), bot.getRobotCurDir(), notYetTaken);
+
+        for (ObsSurface surface : planner.getUncoverable()) {
+            removeFromNotYetTaken(surface);
+            exploredMap.appendSurfaceCoverage(surface);
+            exploredMap.addNotAccessibleSurface(surface);
+        }
+
+        for (int i = 0; i < poses.size(); i++) {
+            Waypoint pose = poses.get(i);
+            CostToGoTable toPose = CostToGoTable.compute(exploredMap, pose.getRow(), pose.getCol(), pose.getDir());
+            ArrayList<MOVEMENT> movements = toPose.walk(bot.getRobotPosRow(), bot.getRobotPosCol(), bot.getRobotCurDir());
+            if (movements == null) continue;    // cut off since planning, left for the next round
+
+            for (MOVEMENT m : movements) {
+                moveBot(m);
+            }
+            takeImage();
+
+            for (ObsSurface surface : planner.getSurfaces(i)) {
+                removeFromNotYetTaken(surface);
+                exploredMap.appendSurfaceCoverage(surface);
+            }
+        }
+    }
+
     private void imageLoop(){
         ObsSurface nearestObstacle = null;
         ObsSurface tempObs;
         Cell nearestCell = null;
         Cell tempCell;
         ArrayList<Cell> path;
-        int pathLength = 100000;
-//        nearestObstacle = exploredMap.nearestObsSurface(bot.getPos(), notYetTaken);
-//        System.out.println("Nearest Surface");
-//        System.out.println(nearestObstacle);
-//        nearestCell = exploredMap.nearestMovable(nearestObstacle);
-//        System.out.println("Nearest Valid Cell");
-//        if(nearestCell==null) System.out.println("No valid cell");
-//        else System.out.println(nearestCell.getPos());
+        int pathLength = Integer.MAX_VALUE;
+
+        // One distance field from the robot answers the reachability and distance of every candidate cell.
+        imageField.compute(bot.getRobotPosRow(), bot.getRobotPosCol());
         for(String surfaceKey : notYetTaken.keySet() ){
             tempObs = notYetTaken.get(surfaceKey);
             tempCell = exploredMap.nearestMovable(tempObs);
             if(tempCell!=null) {
-                path = findPath_image(tempCell);
-                if(path.size() < pathLength){
-                    pathLength = path.size();
+                int dist = imageField.getDistance(tempCell.getRow(), tempCell.getCol());
+                if(dist != DistanceField.UNREACHABLE && dist < pathLength){
+                    pathLength = dist;
                     nearestCell = tempCell;
-                    nearestObstacle = notYetTaken.get(surfaceKey);
+                    nearestObstacle = tempObs;
                 }
             }
         }
@@ -831,20 +1049,18 @@ public class ExplorationAlgo {
 
         if (nearestCell!=null) {
             // go to nearest cell
-            path = findPath_image(nearestCell);
+            path = imageField.getPath(nearestCell.getRow(), nearestCell.getCol());
             System.out.println(path);
-            Cell nearestCell_modified = new Cell(nearestCell.getRow()+1,nearestCell.getCol()+1);
-            goToNearestSurface(nearestCell_modified, path, nearestObstacle);
+            goToNearestSurface(nearestCell, path, nearestObstacle);
             DIRECTION curDir = bot.getRobotCurDir();
             DIRECTION dirForImage = getDirForTakingImage(nearestObstacle);
             while(curDir!=dirForImage){
                 MOVEMENT mov = getTargetMove(curDir,dirForImage);
                 System.out.println(mov);
-                bot.move(mov);
+                moveBot(mov);
                 curDir = bot.getRobotCurDir();
             }
-            exploredMap.setArriveAtImagePos(true);
-            exploredMap.repaint();
+            takeImage();
             System.out.println("surface Taken");
             List<ObsSurface> surfTaken = exploredMap.getSurfaceCoverage();
             System.out.println(surfTaken);
@@ -862,7 +1078,6 @@ public class ExplorationAlgo {
                 removeFromNotYetTaken(nearestObstacle);
                 exploredMap.appendSurfaceCoverage(nearestObstacle);
             }
-            //todo, send command to take image
             //updateNotYetTaken(nearestObstacle);
 
         }
@@ -881,6 +1096,16 @@ public class ExplorationAlgo {
         }
     }
 
+    /**
+     * Takes an image from the robot's current pose: the map records the surfaces it covers, and the real robot is
+     * sent TAKE_IMAGE.
+     */
+    private void takeImage() {
+        exploredMap.setArriveAtImagePos(true);
+        exploredMap.repaint();
+        bot.takeImage();
+    }
+
     private void removeFromNotYetTaken(ObsSurface obsSurface) {
 //        System.out.println("Testing removeFromNotYetTaken");
 //        System.out.println(notYetTaken);
@@ -961,77 +1186,4 @@ public class ExplorationAlgo {
         }
         System.out.println("finished one surface");
     }
-
-
-
-    /**
-     *  Return the shortest path from current path to cell c
-     */
-    private ArrayList<Cell> findPath_image(Cell c) {
-        int[] rowmov = {1, 0, -1, 0};
-        int[] colmov = {0, 1, 0, -1};
-        int[][] dist = new int[MapConstants.MAP_ROWS][MapConstants.MAP_COLS];
-        for (int i = 0; i < MapConstants.MAP_ROWS; i++) {
-            for (int j = 0; j < MapConstants.MAP_COLS; j++) {
-                dist[i][j] = -1;
-            }
-        }
-        ArrayDeque<Cell> nextExplore = new ArrayDeque<>();
-        nextExplore.add(exploredMap.getCell(bot.getRobotPosRow(), bot.getRobotPosCol()));
-        dist[bot.getRobotPosRow()][bot.getRobotPosCol()] = 0;
-        while (!nextExplore.isEmpty()) {
-            Cell current = nextExplore.removeFirst();
-            if (current.getCol() == c.getCol() && current.getRow() == c.getRow()) {
-                break;
-            }
-            for (int i = 0; i < 4; i++){
-                int nextrow = current.getRow() + rowmov[i];
-                int nextcol = current.getCol() + colmov[i];
-                if (nextcol >= 0 && nextrow >= 0 && nextcol < MapConstants.MAP_COLS && nextrow < MapConstants.MAP_ROWS) {
-                    if (dist[nextrow][nextcol] == -1) {
-                        Cell nextCell = exploredMap.getCell(nextrow, nextcol);
-                        if ((nextCell.getIsVirtualWall() || nextCell.getIsObstacle())) {
-                            dist[nextrow][nextcol] = 10000;
-                        }
-                        else {
-                            dist[nextrow][nextcol] = dist[current.getRow()][current.getCol()] + 1;
-                            nextExplore.addLast(nextCell);
-                        }
-                    }
-                }
-            }
-        }
-        System.out.println(dist[c.getRow()][c.getCol()]);
-        if (dist[c.getRow()][c.getCol()] == -1){
-            return null;
-        }
-        ArrayList<Cell> path = new ArrayList<>();
-        Cell current = c;
-        path.add(c);
-
-        System.out.println("enter while");
-        while(!(current.getRow() == bot.getRobotPosRow() & current.getCol() == bot.getRobotPosCol())) {
-
-            for (int i = 0; i < 4; i++) {
-                int nextrow = current.getRow() + rowmov[i];
-                int nextcol = current.getCol() + colmov[i];
-                if (nextcol >= 0 && nextrow >= 0 && nextcol <= MapConstants.MAP_COLS && nextrow <= MapConstants.MAP_ROWS) {
-                    if (dist[nextrow][nextcol] == dist[current.getRow()][current.getCol()] - 1) {
-                        current = exploredMap.getCell(nextrow, nextcol);
-                        path.add(current);
-                        break;
-                    }
-                }
-            }
-        }
-
-        System.out.println("Shortest path from " + bot.getRobotPosRow() + " " + bot.getRobotPosCol() + " to " + c.getRow() + " " + c.getCol());
-        for (int i = path.size() - 1; i >= 0; i--) {
-            System.out.print(path.get(i).getRow() + " " + path.get(i).getCol() + " -> ");
-        }
-        System.out.println();
-
-        return path;
-
-    }
 }
@@ -2,14 +2,16 @@ package algorithms;
 
 import map.Cell;
 import map.Map;
-import map.MapConstants;
 import robot.Robot;
 import robot.RobotConstants;
 import robot.RobotConstants.DIRECTION;
 import robot.RobotConstants.MOVEMENT;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Stack;
 
 // @formatter:off
@@ -19,92 +21,104 @@ import java.util.Stack;
  * g(n) = Real Cost from START to n
  * h(n) = Heuristic Cost from n to GOAL
  *
+ * By default the search runs over (row, col, DIRECTION) states so that turn costs are charged against the real
+ * heading of the robot. setHeadingAware(false) falls back to the original search over cells.
+ *
+ * On the real robot the path is sent as one instruction stream while BOT_POS updates follow at a capped rate.
+ * setPipelined(false) sends every movement separately instead.
+ *
  * @author Suyash Lakhotia
  */
 // @formatter:on
 
 public class FastestPathAlgo {
-    private ArrayList<Cell> toVisit;        // array of Cells to be visited
-    private ArrayList<Cell> visited;        // array of visited Cells
-    private HashMap<Cell, Cell> parents;    // HashMap of Child --> Parent
+    private IndexedPriorityQueue toVisit;   // open list of packed cell indices, keyed on g(n) + h(n)
+    private BitSet visited;                 // closed set of packed cell indices
+    private int[] parents;                  // packed index of Child --> packed index of Parent (-1 if none)
     private Cell current;                   // current Cell
-    private Cell[] neighbors;               // array of neighbors of current Cell
+    private final int[] neighbors;          // packed indices of neighbors of current Cell (-1 if not visitable)
     private DIRECTION curDir;               // current direction of robot
     private double[][] gCosts;              // array of real cost from START to [row][col] i.e. g(n)
     private Robot bot;
     private Map exploredMap;
-    private final Map realMap;
     private int loopCount;
-    private boolean explorationMode;
+    private boolean headingAware = true;    // search over (row, col, DIRECTION) states instead of cells
+    private boolean pipelined = true;       // send the real robot the whole path at once, see Robot.moveStream()
 
     public FastestPathAlgo(Map exploredMap, Robot bot) {
-        this.realMap = null;
-        initObject(exploredMap, bot);
-    }
-
-    public FastestPathAlgo(Map exploredMap, Robot bot, Map realMap) {
-        this.realMap = realMap;
-        this.explorationMode = true;
+        this.neighbors = new int[4];
         initObject(exploredMap, bot);
     }
 
     /**
-     * Initialise the FastestPathAlgo object.
+     * Initialise the FastestPathAlgo object. The search structures are only allocated by the search that needs them.
      */
     private void initObject(Map map, Robot bot) {
         this.bot = bot;
         this.exploredMap = map;
-        this.toVisit = new ArrayList<>();
-        this.visited = new ArrayList<>();
-        this.parents = new HashMap<>();
-        this.neighbors = new Cell[4];
         this.current = map.getCell(bot.getRobotPosRow(), bot.getRobotPosCol());
         this.curDir = bot.getRobotCurDir();
-        this.gCosts = new double[MapConstants.MAP_ROWS][MapConstants.MAP_COLS];
-
-        // Initialise gCosts array
-        for (int i = 0; i < MapConstants.MAP_ROWS; i++) {
-            for (int j = 0; j < MapConstants.MAP_COLS; j++) {
-                Cell cell = map.getCell(i, j);
-                if (!canBeVisited(cell)) {
-                    gCosts[i][j] = RobotConstants.INFINITE_COST;
-                } else {
-                    gCosts[i][j] = 0;
-                }
-            }
+        this.loopCount = 0;
+    }
+
+    /**
+     * Initialise the open list, closed set and g(n) values of the cell-based search.
+     */
+    private void initCellSearch() {
+        this.toVisit = new IndexedPriorityQueue(exploredMap.getNumCells());
+        this.visited = new BitSet(exploredMap.getNumCells());
+        this.parents = new int[exploredMap.getNumCells()];
+        Arrays.fill(parents, -1);
+        this.gCosts = new double[exploredMap.getRows()][exploredMap.getCols()];
+
+        // Initialise gCosts array. Only cells that have been reached are read, so no per-cell visitability check
+        // is needed here.
+        for (int i = 0; i < exploredMap.getRows(); i++) {
+            Arrays.fill(gCosts[i], RobotConstants.INFINITE_COST);
         }
-        toVisit.add(current);
 
         // Initialise starting point
         gCosts[bot.getRobotPosRow()][bot.getRobotPosCol()] = 0;
-        this.loopCount = 0;
+        toVisit.insert(toIndex(current.getRow(), current.getCol()), 0);
     }
 
     /**
-     * Returns true if the cell can be visited.
+     * Selects between the heading-aware search (default) and the original cell-based search.
      */
-    private boolean canBeVisited(Cell c) {
-        return c.getIsExplored() && !c.getIsObstacle() && !c.getIsVirtualWall();
+    public void setHeadingAware(boolean headingAware) {
+        this.headingAware = headingAware;
     }
 
     /**
-     * Returns the Cell inside toVisit with the minimum g(n) + h(n).
+     * Selects between sending the real robot the whole path as one instruction stream (default) and sending every
+     * turn and forward batch as its own message.
      */
-    private Cell minimumCostCell(int goalRow, int getCol) {
-        int size = toVisit.size();
-        double minCost = RobotConstants.INFINITE_COST;
-        Cell result = null;
-
-        for (int i = size - 1; i >= 0; i--) {
-            double gCost = gCosts[(toVisit.get(i).getRow())][(toVisit.get(i).getCol())];
-            double cost = gCost + costH(toVisit.get(i), goalRow, getCol);
-            if (cost < minCost) {
-                minCost = cost;
-                result = toVisit.get(i);
-            }
-        }
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
 
-        return result;
+    /**
+     * Packs a [row, col] pair into a single cell index.
+     */
+    private int toIndex(int row, int col) {
+        return row * exploredMap.getCols() + col;
+    }
+
+    /**
+     * Returns the Cell for a packed cell index.
+     */
+    private Cell toCell(int index) {
+        return exploredMap.getCell(index / exploredMap.getCols(), index % exploredMap.getCols());
+    }
+
+    /**
+     * Returns the packed index of [row, col] if it is inside the arena and can be visited, -1 otherwise.
+     */
+    private int visitableIndex(int row, int col) {
+        if (!exploredMap.checkValidCoordinates(row, col) || !exploredMap.isVisitableCell(row, col)) {
+            return -1;
+        }
+        return toIndex(row, col);
     }
 
     /**
@@ -174,22 +188,31 @@ public class FastestPathAlgo {
     public String runFastestPath(int goalRow, int goalCol) {
         System.out.println("Calculating fastest path from (" + current.getRow() + ", " + current.getCol() + ") to goal (" + goalRow + ", " + goalCol + ")...");
 
+        if (headingAware && isFixedTarget(goalRow, goalCol)) {
+            return runCostToGoPath(goalRow, goalCol);
+        }
+        if (headingAware) {
+            return runHeadingAwarePath(goalRow, goalCol);
+        }
+
+        initCellSearch();
+        int goalIndex = toIndex(goalRow, goalCol);
         Stack<Cell> path;
-        do {
+        while (!toVisit.isEmpty()) {
             loopCount++;
 
             // Get cell with minimum cost from toVisit and assign it to current.
-            current = minimumCostCell(goalRow, goalCol);
+            int curIndex = toVisit.poll();
+            current = toCell(curIndex);
 
             // Point the robot in the direction of current from the previous cell.
-            if (parents.containsKey(current)) {
-                curDir = getTargetDir(parents.get(current).getRow(), parents.get(current).getCol(), curDir, current);
+            if (parents[curIndex] != -1) {
+                curDir = getTargetDir(toCell(parents[curIndex]).getRow(), toCell(parents[curIndex]).getCol(), curDir, current);
             }
 
-            visited.add(current);       // add current to visited
-            toVisit.remove(current);    // remove current from toVisit
+            visited.set(curIndex);      // add current to visited
 
-            if (visited.contains(exploredMap.getCell(goalRow, goalCol))) {
+            if (curIndex == goalIndex) {
                 System.out.println("Goal visited. Path found!");
                 path = getPath(goalRow, goalCol);
                 printFastestPath(path);
@@ -197,82 +220,307 @@ public class FastestPathAlgo {
             }
 
             // Setup neighbors of current cell. [Top, Bottom, Left, Right].
-            if (exploredMap.checkValidCoordinates(current.getRow() + 1, current.getCol())) {
-                neighbors[0] = exploredMap.getCell(current.getRow() + 1, current.getCol());
-                if (!canBeVisited(neighbors[0])) {
-                    neighbors[0] = null;
+            neighbors[0] = visitableIndex(current.getRow() + 1, current.getCol());
+            neighbors[1] = visitableIndex(current.getRow() - 1, current.getCol());
+            neighbors[2] = visitableIndex(current.getRow(), current.getCol() - 1);
+            neighbors[3] = visitableIndex(current.getRow(), current.getCol() + 1);
+
+            // Iterate through neighbors and update the g(n) values of each.
+            double curGScore = gCosts[current.getRow()][current.getCol()];
+            for (int i = 0; i < 4; i++) {
+                int n = neighbors[i];
+                if (n == -1 || visited.get(n)) {
+                    continue;
                 }
-            }
-            if (exploredMap.checkValidCoordinates(current.getRow() - 1, current.getCol())) {
-                neighbors[1] = exploredMap.getCell(current.getRow() - 1, current.getCol());
-                if (!canBeVisited(neighbors[1])) {
-                    neighbors[1] = null;
+
+                Cell neighbor = toCell(n);
+                double newGScore = curGScore + costG(current, neighbor, curDir);
+                double newFScore = newGScore + costH(neighbor, goalRow, goalCol);
+                if (!toVisit.contains(n)) {
+                    parents[n] = curIndex;
+                    gCosts[neighbor.getRow()][neighbor.getCol()] = newGScore;
+                    toVisit.insert(n, newFScore);
+                } else if (newGScore < gCosts[neighbor.getRow()][neighbor.getCol()]) {
+                    gCosts[neighbor.getRow()][neighbor.getCol()] = newGScore;
+                    parents[n] = curIndex;
+                    toVisit.decreaseKey(n, newFScore);
                 }
             }
-            if (exploredMap.checkValidCoordinates(current.getRow(), current.getCol() - 1)) {
-                neighbors[2] = exploredMap.getCell(current.getRow(), current.getCol() - 1);
-                if (!canBeVisited(neighbors[2])) {
-                    neighbors[2] = null;
+        }
+
+        System.out.println("Path not found!");
+        return null;
+    }
+
+    /**
+     * Returns true for START and GOAL, the targets served by cached CostToGoTables.
+     */
+    private boolean isFixedTarget(int goalRow, int goalCol) {
+        return (goalRow == exploredMap.getStartRow() && goalCol == exploredMap.getStartCol()) || (goalRow == exploredMap.getGoalRow() && goalCol == exploredMap.getGoalCol());
+    }
+
+    /**
+     * Follows the cached cost-to-go table towards [goalRow, goalCol] from the robot's current cell and heading. Falls
+     * back to a heading-aware search if the table has no route.
+     */
+    private String runCostToGoPath(int goalRow, int goalCol) {
+        CostToGoTable table = CostToGoTable.get(exploredMap, goalRow, goalCol);
+        ArrayList<MOVEMENT> movements = table.walk(bot.getRobotPosRow(), bot.getRobotPosCol(), bot.getRobotCurDir());
+        if (movements == null) {
+            System.out.println("No route in cost-to-go table, searching...");
+            return runHeadingAwarePath(goalRow, goalCol);
+        }
+
+        System.out.println("Path found from cost-to-go table!");
+        return executeMovements(movements);
+    }
+
+    /**
+     * Finds and executes the fastest route from the robot's current position through [waypointRow, waypointCol] to
+     * [goalRow, goalCol].
+     */
+    public String runFastestPath(int waypointRow, int waypointCol, int goalRow, int goalCol) {
+        ArrayList<Waypoint> targets = new ArrayList<>();
+        targets.add(new Waypoint(waypointRow, waypointCol));
+        targets.add(new Waypoint(goalRow, goalCol));
+        return runFastestPath(targets, true);
+    }
+
+    /**
+     * Visits every target and returns the merged movements. With keepOrder the targets are visited in the given
+     * order, otherwise the order with the lowest total cost is chosen by a TourPlanner. The heading-aware costs
+     * between all targets are computed in one batch: one CostToGoTable per target. With keepOrder no path is returned
+     * if any target is unreachable; otherwise unreachable targets are left out of the tour.
+     */
+    public String runFastestPath(List<Waypoint> targets, boolean keepOrder) {
+        System.out.println("Calculating fastest path from (" + current.getRow() + ", " + current.getCol() + ") through " + targets + "...");
+
+        int startRow = bot.getRobotPosRow();
+        int startCol = bot.getRobotPosCol();
+        DIRECTION startDir = bot.getRobotCurDir();
+
+        ArrayList<Waypoint> reachable = new ArrayList<>();
+        ArrayList<CostToGoTable> tables = new ArrayList<>();
+        for (Waypoint t : targets) {
+            CostToGoTable table = CostToGoTable.compute(exploredMap, t.getRow(), t.getCol(), t.getDir());
+            if (table.getCost(startRow, startCol, startDir) == CostToGoTable.UNREACHABLE) {
+                if (keepOrder) {
+                    System.out.println("Path not found to " + t + "!");
+                    return null;
                 }
+                System.out.println("Skipping unreachable target " + t);
+                continue;
             }
-            if (exploredMap.checkValidCoordinates(current.getRow(), current.getCol() + 1)) {
-                neighbors[3] = exploredMap.getCell(current.getRow(), current.getCol() + 1);
-                if (!canBeVisited(neighbors[3])) {
-                    neighbors[3] = null;
-                }
+            reachable.add(t);
+            tables.add(table);
+        }
+        if (reachable.isEmpty()) {
+            System.out.println("Path not found!");
+            return null;
+        }
+
+        int[] order = new int[reachable.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (!keepOrder) {
+            order = planTour(reachable, tables, startRow, startCol, startDir);
+        }
+
+        // Merge the legs, following each table from wherever the previous leg ended.
+        ArrayList<MOVEMENT> movements = new ArrayList<>();
+        int row = startRow;
+        int col = startCol;
+        DIRECTION dir = startDir;
+        for (int i : order) {
+            ArrayList<MOVEMENT> leg = tables.get(i).walk(row, col, dir);
+            if (leg == null) {
+                System.out.println("Path not found to " + reachable.get(i) + "!");
+                return null;
             }
+            movements.addAll(leg);
+            dir = tables.get(i).getArrivalDir(row, col, dir);
+            row = reachable.get(i).getRow();
+            col = reachable.get(i).getCol();
+        }
 
-            // Iterate through neighbors and update the g(n) values of each.
-            for (int i = 0; i < 4; i++) {
-                if (neighbors[i] != null) {
-                    if (visited.contains(neighbors[i])) {
-                        continue;
-                    }
+        return executeMovements(movements);
+    }
 
-                    if (!(toVisit.contains(neighbors[i]))) {
-                        parents.put(neighbors[i], current);
-                        gCosts[neighbors[i].getRow()][neighbors[i].getCol()] = gCosts[current.getRow()][current.getCol()] + costG(current, neighbors[i], curDir);
-                        toVisit.add(neighbors[i]);
-                    } else {
-                        double currentGScore = gCosts[neighbors[i].getRow()][neighbors[i].getCol()];
-                        double newGScore = gCosts[current.getRow()][current.getCol()] + costG(current, neighbors[i], curDir);
-                        if (newGScore < currentGScore) {
-                            gCosts[neighbors[i].getRow()][neighbors[i].getCol()] = newGScore;
-                            parents.put(neighbors[i], current);
-                        }
-                    }
+    /**
+     * Asks a TourPlanner for the best order in which to visit the reachable targets.
+     */
+    private int[] planTour(List<Waypoint> targets, List<CostToGoTable> tables, int startRow, int startCol, DIRECTION startDir) {
+        TourPlanner planner = TourPlanner.forWaypoints(targets, tables, startRow, startCol, startDir);
+        int[] order = planner.solve();
+        System.out.println("Visiting order cost: " + planner.tourCost(order));
+        return order;
+    }
+
+    /**
+     * Packs a [row, col, dir] state into a single state index.
+     */
+    private int toState(int row, int col, DIRECTION dir) {
+        return toIndex(row, col) * 4 + dir.ordinal();
+    }
+
+    /**
+     * Lower bound on the cost from [row, col] facing dir to [goalRow, goalCol] in any direction. Counts the cells
+     * that still have to be crossed plus the turns needed to face every direction of travel that is left.
+     */
+    private double stateCostH(int row, int col, DIRECTION dir, int goalRow, int goalCol) {
+        int dRow = goalRow - row;
+        int dCol = goalCol - col;
+        double movementCost = (Math.abs(dRow) + Math.abs(dCol)) * RobotConstants.MOVE_COST;
+
+        DIRECTION rowDir = dRow > 0 ? DIRECTION.NORTH : (dRow < 0 ? DIRECTION.SOUTH : null);
+        DIRECTION colDir = dCol > 0 ? DIRECTION.EAST : (dCol < 0 ? DIRECTION.WEST : null);
+
+        int turns;
+        if (rowDir == null && colDir == null) {
+            turns = 0;
+        } else if (rowDir != null && colDir != null) {
+            turns = (dir == rowDir || dir == colDir) ? 1 : 2;
+        } else {
+            turns = (int) (getTurnCost(dir, rowDir != null ? rowDir : colDir) / RobotConstants.TURN_COST);
+        }
+
+        return movementCost + turns * RobotConstants.TURN_COST;
+    }
+
+    /**
+     * A* over (row, col, DIRECTION) states. FORWARD moves to the next cell in the current direction and costs
+     * MOVE_COST; RIGHT and LEFT turn on the spot and cost TURN_COST. The returned path is optimal in both moves and
+     * turns because every state carries the real heading of the robot.
+     */
+    private String runHeadingAwarePath(int goalRow, int goalCol) {
+        int numStates = exploredMap.getNumCells() * 4;
+        IndexedPriorityQueue open = new IndexedPriorityQueue(numStates);
+        BitSet closed = new BitSet(numStates);
+        int[] stateParents = new int[numStates];
+        double[] stateGCosts = new double[numStates];
+        Arrays.fill(stateGCosts, RobotConstants.INFINITE_COST);
+
+        int startRow = bot.getRobotPosRow();
+        int startCol = bot.getRobotPosCol();
+        DIRECTION startDir = bot.getRobotCurDir();
+        int start = toState(startRow, startCol, startDir);
+        stateParents[start] = -1;
+        stateGCosts[start] = 0;
+        open.insert(start, stateCostH(startRow, startCol, startDir, goalRow, goalCol));
+
+        DIRECTION[] dirs = DIRECTION.values();
+        while (!open.isEmpty()) {
+            loopCount++;
+
+            int state = open.poll();
+            closed.set(state);
+
+            int cellIndex = state / 4;
+            int row = cellIndex / exploredMap.getCols();
+            int col = cellIndex % exploredMap.getCols();
+            DIRECTION dir = dirs[state % 4];
+
+            if (row == goalRow && col == goalCol) {
+                System.out.println("Goal visited. Path found!");
+                return executeStatePath(stateParents, state);
+            }
+
+            // Successors: [Forward, Right turn, Left turn].
+            int fwdIndex;
+            switch (dir) {
+                case NORTH:
+                    fwdIndex = visitableIndex(row + 1, col);
+                    break;
+                case EAST:
+                    fwdIndex = visitableIndex(row, col + 1);
+                    break;
+                case SOUTH:
+                    fwdIndex = visitableIndex(row - 1, col);
+                    break;
+                default:
+                    fwdIndex = visitableIndex(row, col - 1);
+                    break;
+            }
+
+            for (int i = 0; i < 3; i++) {
+                int next;
+                double stepCost;
+                if (i == 0) {
+                    if (fwdIndex == -1) continue;
+                    next = fwdIndex * 4 + dir.ordinal();
+                    stepCost = RobotConstants.MOVE_COST;
+                } else {
+                    DIRECTION nextDir = (i == 1) ? DIRECTION.getNext(dir) : DIRECTION.getPrevious(dir);
+                    next = cellIndex * 4 + nextDir.ordinal();
+                    stepCost = RobotConstants.TURN_COST;
+                }
+                if (closed.get(next)) continue;
+
+                double newGScore = stateGCosts[state] + stepCost;
+                if (newGScore >= stateGCosts[next]) continue;
+
+                int nextCell = next / 4;
+                double newFScore = newGScore + stateCostH(nextCell / exploredMap.getCols(), nextCell % exploredMap.getCols(), dirs[next % 4], goalRow, goalCol);
+                stateGCosts[next] = newGScore;
+                stateParents[next] = state;
+                if (open.contains(next)) {
+                    open.decreaseKey(next, newFScore);
+                } else {
+                    open.insert(next, newFScore);
                 }
             }
-        } while (!toVisit.isEmpty());
+        }
 
         System.out.println("Path not found!");
         return null;
     }
 
     /**
-     * Generates path in reverse using the parents HashMap.
+     * Converts a chain of states ending at goalState into movements, prints the path and executes it.
+     */
+    private String executeStatePath(int[] stateParents, int goalState) {
+        ArrayList<MOVEMENT> movements = new ArrayList<>();
+        Stack<Cell> path = new Stack<>();
+        path.push(toCell(goalState / 4));
+
+        DIRECTION[] dirs = DIRECTION.values();
+        for (int state = goalState; stateParents[state] != -1; state = stateParents[state]) {
+            int prev = stateParents[state];
+            if (prev / 4 != state / 4) {
+                movements.add(MOVEMENT.FORWARD);
+                path.push(toCell(prev / 4));
+            } else if (DIRECTION.getNext(dirs[prev % 4]) == dirs[state % 4]) {
+                movements.add(MOVEMENT.RIGHT);
+            } else {
+                movements.add(MOVEMENT.LEFT);
+            }
+        }
+        Collections.reverse(movements);
+
+        printFastestPath(path);
+        return executeMovements(movements);
+    }
+
+    /**
+     * Generates path in reverse using the parents array.
      */
     private Stack<Cell> getPath(int goalRow, int goalCol) {
         Stack<Cell> actualPath = new Stack<>();
-        Cell temp = exploredMap.getCell(goalRow, goalCol);
+        int temp = toIndex(goalRow, goalCol);
 
-        while (true) {
-            actualPath.push(temp);
-            temp = parents.get(temp);
-            if (temp == null) {
-                break;
-            }
+        while (temp != -1) {
+            actualPath.push(toCell(temp));
+            temp = parents[temp];
         }
 
         return actualPath;
     }
 
     /**
-     * Executes the fastest path and returns a StringBuilder object with the path steps.
+     * Converts the cell path into robot movements, executes them and returns the movement string.
      */
     private String executePath(Stack<Cell> path, int goalRow, int goalCol) {
-        StringBuilder outputString = new StringBuilder();
-
         Cell temp = path.pop();
         DIRECTION targetDir;
 
@@ -299,28 +547,28 @@ public class FastestPathAlgo {
 
             tempBot.move(m);
             movements.add(m);
-            outputString.append(MOVEMENT.print(m));
         }
 
-        if (!bot.getRealBot() || explorationMode) {
-            for (MOVEMENT x : movements) {
-                if (x == MOVEMENT.FORWARD) {
-                    if (!canMoveForward()) {
-                        System.out.println("Early termination of fastest path execution.");
-                        return "T";
-                    }
-                }
+        return executeMovements(movements);
+    }
+
+    /**
+     * Executes a list of movements on the robot and returns a String with the path steps.
+     */
+    private String executeMovements(ArrayList<MOVEMENT> movements) {
+        StringBuilder outputString = new StringBuilder();
+        for (MOVEMENT x : movements) {
+            outputString.append(MOVEMENT.print(x));
+        }
 
+        if (!bot.getRealBot()) {
+            for (MOVEMENT x : movements) {
                 bot.move(x);
                 this.exploredMap.repaint();
-
-                // During exploration, use sensor data to update exploredMap.
-                if (explorationMode) {
-                    bot.setSensors();
-                    bot.sense(this.exploredMap, this.realMap);
-                    this.exploredMap.repaint();
-                }
             }
+        } else if (pipelined) {
+            bot.moveStream(movements, exploredMap);
+            senseReply();
         } else {
             int fCount = 0;
             for (MOVEMENT x : movements) {
@@ -329,23 +577,23 @@ public class FastestPathAlgo {
                     if (fCount == 10) {
                         bot.moveForwardMultiple(fCount);
                         fCount = 0;
-                        exploredMap.repaint();
+                        senseReply();
                     }
                 } else if (x == MOVEMENT.RIGHT || x == MOVEMENT.LEFT) {
                     if (fCount > 0) {
                         bot.moveForwardMultiple(fCount);
                         fCount = 0;
-                        exploredMap.repaint();
+                        senseReply();
                     }
 
                     bot.move(x);
-                    exploredMap.repaint();
+                    senseReply();
                 }
             }
 
             if (fCount > 0) {
                 bot.moveForwardMultiple(fCount);
-                exploredMap.repaint();
+                senseReply();
             }
         }
 
@@ -354,36 +602,13 @@ public class FastestPathAlgo {
     }
 
     /**
-     * Returns true if the robot can move forward one cell with the current heading.
+     * Reads the SDATA the real robot replies with after every INSTR message and fuses it into the explored map. Left
+     * unread, it would be taken by the next sense during exploration as the reading of a later pose.
      */
-    private boolean canMoveForward() {
-        int row = bot.getRobotPosRow();
-        int col = bot.getRobotPosCol();
-
-        switch (bot.getRobotCurDir()) {
-            case NORTH:
-                if (!exploredMap.isObstacleCell(row + 2, col - 1) && !exploredMap.isObstacleCell(row + 2, col) && !exploredMap.isObstacleCell(row + 2, col + 1)) {
-                    return true;
-                }
-                break;
-            case EAST:
-                if (!exploredMap.isObstacleCell(row + 1, col + 2) && !exploredMap.isObstacleCell(row, col + 2) && !exploredMap.isObstacleCell(row - 1, col + 2)) {
-                    return true;
-                }
-                break;
-            case SOUTH:
-                if (!exploredMap.isObstacleCell(row - 2, col - 1) && !exploredMap.isObstacleCell(row - 2, col) && !exploredMap.isObstacleCell(row - 2, col + 1)) {
-                    return true;
-                }
-                break;
-            case WEST:
-                if (!exploredMap.isObstacleCell(row + 1, col - 2) && !exploredMap.isObstacleCell(row, col - 2) && !exploredMap.isObstacleCell(row - 1, col - 2)) {
-                    return true;
-                }
-                break;
-        }
-
-        return false;
+    private void senseReply() {
+        bot.setSensors();
+        bot.sense(exploredMap, null);
+        exploredMap.repaint();
     }
 
     /**
@@ -465,9 +690,10 @@ public class FastestPathAlgo {
      * Prints all the current g(n) values for the cells.
      */
     public void printGCosts() {
-        for (int i = 0; i < MapConstants.MAP_ROWS; i++) {
-            for (int j = 0; j < MapConstants.MAP_COLS; j++) {
-                System.out.print(gCosts[MapConstants.MAP_ROWS - 1 - i][j]);
+        if (gCosts == null) return;
+        for (int i = 0; i < exploredMap.getRows(); i++) {
+            for (int j = 0; j < exploredMap.getCols(); j++) {
+                System.out.print(gCosts[exploredMap.getRows() - 1 - i][j]);
                 System.out.print(";");
             }
             System.out.println("\n");
@@ -0,0 +1,178 @@
+package algorithms;
+
+import map.Map;
+import map.ObsSurface;
+import robot.RobotConstants.DIRECTION;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+// @formatter:off
+/**
+ * Plans the image run over all untaken obstacle surfaces at once, instead of driving to the nearest one each time.
+ *
+ * 1. Every visitable cell and heading is a candidate pose. The surfaces it sees are given by
+ *    Map.getVisibleSurfaces(), i.e. the same rules that decide what an image at that pose captures.
+ * 2. Poses are picked greedily, each time the one that sees the most surfaces not seen yet (set cover). Ties go to
+ *    the pose closer to the robot.
+ * 3. The picked poses are ordered by a TourPlanner with heading-aware costs.
+ *
+ * Surfaces that no reachable pose sees are reported by getUncoverable().
+ */
+// @formatter:on
+
+public class ImageTourPlanner {
+    public static final long DEFAULT_TIME_BUDGET = 200;    // in ms, for ordering the poses
+
+    private final Map map;
+    private final DistanceField field;
+    private final DistanceField visitableField;     // over visitable cells only, as the robot can drive
+    private final long timeBudget;
+    private final List<List<ObsSurface>> poseSurfaces = new ArrayList<>();
+    private final List<ObsSurface> uncoverable = new ArrayList<>();
+
+    public ImageTourPlanner(Map map) {
+        this(map, DEFAULT_TIME_BUDGET);
+    }
+
+    public ImageTourPlanner(Map map, long timeBudget) {
+        this.map = map;
+        this.field = new DistanceField(map);
+        this.visitableField = new DistanceField(map);
+        this.visitableField.setExploredFootprint(0);
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Returns the poses from which to take images of the given surfaces, in the order to visit them, with the robot
+     * starting at [row, col] facing dir.
+     */
+    public List<Waypoint> plan(int row, int col, DIRECTION dir, HashMap<String, ObsSurface> surfaces) {
+        poseSurfaces.clear();
+        uncoverable.clear();
+
+        List<ObsSurface> targets = new ArrayList<>(surfaces.values());
+        HashMap<String, Integer> targetIndex = new HashMap<>();
+        for (int i = 0; i < targets.size(); i++) {
+            targetIndex.put(targets.get(i).toString(), i);
+        }
+
+        // Candidate poses and the target surfaces each one sees.
+        field.compute(row, col);
+        List<Waypoint> candidates = new ArrayList<>();
+        List<BitSet> candidateSees = new ArrayList<>();
+        BitSet seen = new BitSet(targets.size());
+        for (int r = 0; r < map.getRows(); r++) {
+            for (int c = 0; c < map.getCols(); c++) {
+                if (!map.checkValidMove(r, c) || field.getDistance(r, c) == DistanceField.UNREACHABLE) continue;
+
+                for (DIRECTION d : DIRECTION.values()) {
+                    BitSet sees = new BitSet(targets.size());
+                    for (ObsSurface s : map.getVisibleSurfaces(d, r, c)) {
+                        Integer i = targetIndex.get(s.toString());
+                        if (i != null) sees.set(i);
+                    }
+                    if (sees.isEmpty()) continue;
+
+                    candidates.add(new Waypoint(r, c, d));
+                    candidateSees.add(sees);
+                    seen.or(sees);
+                }
+            }
+        }
+
+        // Greedy set cover.
+        List<Waypoint> poses = new ArrayList<>();
+        List<BitSet> posesSee = new ArrayList<>();
+        BitSet covered = new BitSet(targets.size());
+        while (!covered.equals(seen)) {
+            int best = -1;
+            int bestGain = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                BitSet gain = (BitSet) candidateSees.get(i).clone();
+                gain.andNot(covered);
+                int g = gain.cardinality();
+                if (g > bestGain || (g == bestGain && g > 0 && distance(candidates.get(i)) < distance(candidates.get(best)))) {
+                    best = i;
+                    bestGain = g;
+                }
+            }
+
+            BitSet gain = (BitSet) candidateSees.get(best).clone();
+            gain.andNot(covered);
+            covered.or(gain);
+            poses.add(candidates.get(best));
+            posesSee.add(gain);
+        }
+
+        // Drop poses the robot cannot drive to, e.g. when the only way there crosses unexplored cells. The robot can
+        // turn on the spot, so a pose is reachable if its cell is, unless the robot's own cell has become a virtual
+        // wall and it cannot move at all.
+        boolean canMove = map.isVisitableCell(row, col);
+        if (canMove) visitableField.compute(row, col);
+        List<Waypoint> reachable = new ArrayList<>();
+        List<BitSet> reachableSee = new ArrayList<>();
+        covered.clear();
+        for (int i = 0; i < poses.size(); i++) {
+            Waypoint pose = poses.get(i);
+            if (!canMove || visitableField.getDistance(pose.getRow(), pose.getCol()) == DistanceField.UNREACHABLE) continue;
+
+            reachable.add(pose);
+            reachableSee.add(posesSee.get(i));
+            covered.or(posesSee.get(i));
+        }
+
+        // Built as the TourPlanner reads them, so that only one table of the arena is held at a time.
+        List<CostToGoTable> tables = new AbstractList<CostToGoTable>() {
+            public CostToGoTable get(int i) {
+                Waypoint pose = reachable.get(i);
+                return CostToGoTable.compute(map, pose.getRow(), pose.getCol(), pose.getDir());
+            }
+
+            public int size() {
+                return reachable.size();
+            }
+        };
+
+        for (int i = 0; i < targets.size(); i++) {
+            if (!covered.get(i)) uncoverable.add(targets.get(i));
+        }
+
+        TourPlanner planner = TourPlanner.forWaypoints(reachable, tables, row, col, dir);
+        planner.setTimeBudget(timeBudget);
+        int[] order = planner.solve();
+        System.out.println(targets.size() + " surfaces from " + reachable.size() + " poses, tour cost: " + planner.tourCost(order));
+
+        List<Waypoint> tour = new ArrayList<>();
+        for (int i : order) {
+            tour.add(reachable.get(i));
+            List<ObsSurface> captured = new ArrayList<>();
+            for (int s = reachableSee.get(i).nextSetBit(0); s >= 0; s = reachableSee.get(i).nextSetBit(s + 1)) {
+                captured.add(targets.get(s));
+            }
+            poseSurfaces.add(captured);
+        }
+        return tour;
+    }
+
+    /**
+     * Returns the surfaces that the i-th pose of the last plan is responsible for.
+     */
+    public List<ObsSurface> getSurfaces(int i) {
+        return poseSurfaces.get(i);
+    }
+
+    /**
+     * Returns the surfaces of the last plan that cannot be seen from any reachable pose.
+     */
+    public List<ObsSurface> getUncoverable() {
+        return uncoverable;
+    }
+
+    private int distance(Waypoint pose) {
+        return field.getDistance(pose.getRow(), pose.getCol());
+    }
+}
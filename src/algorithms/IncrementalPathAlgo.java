@@ -0,0 +1,340 @@
+package algorithms;
+
+import map.Map;
+import robot.Robot;
+import robot.RobotConstants;
+import robot.RobotConstants.DIRECTION;
+import robot.RobotConstants.MOVEMENT;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// @formatter:off
+/**
+ * Incremental fastest path for use during exploration. Uses D* Lite over (row, col, DIRECTION) states.
+ *
+ * The search runs backwards from the goal, so g(s) is the cost from s to GOAL. After every move the robot senses,
+ * the cells whose visitability changed are found and only the states around them are repaired. This replaces
+ * aborting the run and building a new FastestPathAlgo whenever a new obstacle is sensed on the path.
+ *
+ * key(s) = [min(g(s), rhs(s)) + h(start, s) + km, min(g(s), rhs(s))]
+ */
+// @formatter:on
+
+public class IncrementalPathAlgo {
+    private static final int INFINITE_COST = Integer.MAX_VALUE / 4;
+    private static final double KEY_SCALE = 1 << 24;   // packs both key parts into one priority
+
+    private final Map exploredMap;
+    private final Map realMap;
+    private final Robot bot;
+    private final int rows;
+    private final int cols;
+    private final int numStates;
+    private final IndexedPriorityQueue open;
+    private final int[] g;
+    private final int[] rhs;
+    private final BitSet visitable;                    // last seen visitability of every cell
+    private final int[] changedCells;
+    private int succState;                              // state reached by the last call to successor()
+    private int goalRow;
+    private int goalCol;
+    private int lastRow;                                // robot position when km was last updated
+    private int lastCol;
+    private int km;
+    private long lastReplanNanos;
+
+    public IncrementalPathAlgo(Map exploredMap, Robot bot, Map realMap) {
+        this.exploredMap = exploredMap;
+        this.realMap = realMap;
+        this.bot = bot;
+        this.rows = exploredMap.getRows();
+        this.cols = exploredMap.getCols();
+        this.numStates = rows * cols * 4;
+        this.open = new IndexedPriorityQueue(numStates);
+        this.g = new int[numStates];
+        this.rhs = new int[numStates];
+        this.visitable = new BitSet(rows * cols);
+        this.changedCells = new int[rows * cols];
+    }
+
+    /**
+     * Returns the time taken by the last call to replan() in nanoseconds.
+     */
+    public long getLastReplanNanos() {
+        return lastReplanNanos;
+    }
+
+    /**
+     * Drives the robot from its current position to [goalRow, goalCol], sensing after every move and repairing the
+     * path whenever the explored map changes. Returns the executed movements or null if the goal is unreachable.
+     */
+    public String runFastestPath(int goalRow, int goalCol) {
+        System.out.println("Calculating incremental fastest path from (" + bot.getRobotPosRow() + ", " + bot.getRobotPosCol() + ") to goal (" + goalRow + ", " + goalCol + ")...");
+
+        initialise(goalRow, goalCol);
+        computeShortestPath();
+
+        StringBuilder outputString = new StringBuilder();
+        while (bot.getRobotPosRow() != goalRow || bot.getRobotPosCol() != goalCol) {
+            int start = startState();
+            if (g[start] >= INFINITE_COST) {
+                System.out.println("Path not found!");
+                return null;
+            }
+
+            MOVEMENT m = nextMove(start);
+            if (m == MOVEMENT.ERROR) {
+                // No successor is consistent with g[start]: repair from the whole map, or stop if nothing changed.
+                if (replan() > 0) continue;
+                System.out.println("Path not found!");
+                return null;
+            }
+            bot.move(m);
+            exploredMap.repaint();
+            outputString.append(MOVEMENT.print(m));
+
+            bot.setSensors();
+            bot.sense(exploredMap, realMap);
+            exploredMap.repaint();
+
+            int changes = replanAroundRobot();
+            if (changes > 0) {
+                System.out.println("Replanned around " + changes + " changed cells in " + lastReplanNanos / 1000 + " us");
+            }
+        }
+
+        System.out.println("\nMovements: " + outputString.toString());
+        return outputString.toString();
+    }
+
+    /**
+     * Compares the explored map against the last seen visitability, updates the states touching every changed cell
+     * and repairs the search tree. Returns the number of changed cells.
+     */
+    public int replan() {
+        return replan(0, rows - 1, 0, cols - 1);
+    }
+
+    /**
+     * Same as replan(), but only looks for changes within reach of the robot's sensors. This is all that sensing
+     * after one move can change, and keeps the cost of a step independent of the size of the arena.
+     */
+    private int replanAroundRobot() {
+        int reach = RobotConstants.SENSOR_LONG_RANGE_H + bot.getRadius() + exploredMap.getWallRadius();
+        int row = bot.getRobotPosRow();
+        int col = bot.getRobotPosCol();
+        return replan(Math.max(0, row - reach), Math.min(rows - 1, row + reach), Math.max(0, col - reach), Math.min(cols - 1, col + reach));
+    }
+
+    private int replan(int fromRow, int toRow, int fromCol, int toCol) {
+        long begin = System.nanoTime();
+
+        int numChanged = 0;
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromCol; c <= toCol; c++) {
+                int i = r * cols + c;
+                if (isVisitable(i) != visitable.get(i)) {
+                    changedCells[numChanged++] = i;
+                }
+            }
+        }
+
+        if (numChanged > 0) {
+            int row = bot.getRobotPosRow();
+            int col = bot.getRobotPosCol();
+            km += (Math.abs(row - lastRow) + Math.abs(col - lastCol)) * RobotConstants.MOVE_COST;
+            lastRow = row;
+            lastCol = col;
+
+            for (int i = 0; i < numChanged; i++) {
+                int cell = changedCells[i];
+                visitable.flip(cell);
+
+                // Every edge into or out of the cell changes: the turns and forward moves starting in it, and the
+                // forward moves ending in it.
+                int cellRow = cell / cols;
+                int cellCol = cell % cols;
+                for (DIRECTION d : DIRECTION.values()) {
+                    updateVertex(cell * 4 + d.ordinal());
+                    int prevCell = neighbourIndex(cellRow, cellCol, d, -1);
+                    if (prevCell != -1) updateVertex(prevCell * 4 + d.ordinal());
+                }
+            }
+            computeShortestPath();
+        }
+
+        lastReplanNanos = System.nanoTime() - begin;
+        return numChanged;
+    }
+
+    /**
+     * Resets the search for a new goal. The goal cell can be reached in any direction.
+     */
+    private void initialise(int goalRow, int goalCol) {
+        this.goalRow = goalRow;
+        this.goalCol = goalCol;
+        this.lastRow = bot.getRobotPosRow();
+        this.lastCol = bot.getRobotPosCol();
+        this.km = 0;
+
+        open.clear();
+        Arrays.fill(g, INFINITE_COST);
+        Arrays.fill(rhs, INFINITE_COST);
+
+        visitable.clear();
+        for (int i = 0; i < rows * cols; i++) {
+            if (isVisitable(i)) visitable.set(i);
+        }
+
+        int goalCell = goalRow * cols + goalCol;
+        for (DIRECTION d : DIRECTION.values()) {
+            int goal = goalCell * 4 + d.ordinal();
+            rhs[goal] = 0;
+            open.insert(goal, calculateKey(goal));
+        }
+    }
+
+    /**
+     * Returns true if the robot can stand on the given cell.
+     */
+    private boolean isVisitable(int cellIndex) {
+        return exploredMap.isVisitableCell(cellIndex / cols, cellIndex % cols);
+    }
+
+    /**
+     * Returns the packed index of the cell `steps` cells away from [row, col] in direction d, or -1 if outside the
+     * arena.
+     */
+    private int neighbourIndex(int row, int col, DIRECTION d, int steps) {
+        switch (d) {
+            case NORTH:
+                row += steps;
+                break;
+            case EAST:
+                col += steps;
+                break;
+            case SOUTH:
+                row -= steps;
+                break;
+            case WEST:
+                col -= steps;
+                break;
+        }
+        if (row < 0 || col < 0 || row >= rows || col >= cols) return -1;
+        return row * cols + col;
+    }
+
+    private int startState() {
+        return (bot.getRobotPosRow() * cols + bot.getRobotPosCol()) * 4 + bot.getRobotCurDir().ordinal();
+    }
+
+    /**
+     * Admissible heuristic from the robot's current cell to a state: the Manhattan distance in moves.
+     */
+    private int costH(int state) {
+        int cell = state / 4;
+        return (Math.abs(cell / cols - bot.getRobotPosRow()) + Math.abs(cell % cols - bot.getRobotPosCol())) * RobotConstants.MOVE_COST;
+    }
+
+    private double calculateKey(int state) {
+        int k2 = Math.min(g[state], rhs[state]);
+        return (double) (k2 + costH(state) + km) * KEY_SCALE + k2;
+    }
+
+    /**
+     * Cost of the edge from a state to its successor i [0 = Forward, 1 = Right turn, 2 = Left turn], or
+     * INFINITE_COST if either end is not visitable. The successor itself is left in succState.
+     */
+    private int successor(int state, int i) {
+        int cell = state / 4;
+        DIRECTION dir = DIRECTION.values()[state % 4];
+        if (!visitable.get(cell)) return INFINITE_COST;
+
+        if (i == 0) {
+            int fwdCell = neighbourIndex(cell / cols, cell % cols, dir, 1);
+            if (fwdCell == -1 || !visitable.get(fwdCell)) return INFINITE_COST;
+            succState = fwdCell * 4 + dir.ordinal();
+            return RobotConstants.MOVE_COST;
+        }
+
+        DIRECTION nextDir = (i == 1) ? DIRECTION.getNext(dir) : DIRECTION.getPrevious(dir);
+        succState = cell * 4 + nextDir.ordinal();
+        return RobotConstants.TURN_COST;
+    }
+
+    private void updateVertex(int state) {
+        if (state / 4 != goalRow * cols + goalCol) {
+            int best = INFINITE_COST;
+            for (int i = 0; i < 3; i++) {
+                int cost = successor(state, i);
+                if (cost < INFINITE_COST && g[succState] < INFINITE_COST) {
+                    best = Math.min(best, cost + g[succState]);
+                }
+            }
+            rhs[state] = best;
+        }
+
+        if (g[state] != rhs[state]) {
+            if (open.contains(state)) {
+                open.update(state, calculateKey(state));
+            } else {
+                open.insert(state, calculateKey(state));
+            }
+        } else if (open.contains(state)) {
+            open.remove(state);
+        }
+    }
+
+    /**
+     * Updates every state that has the given state as a successor: the state one cell behind in the same direction
+     * and the two states on the same cell that turn into it.
+     */
+    private void updatePredecessors(int state) {
+        int cell = state / 4;
+        DIRECTION dir = DIRECTION.values()[state % 4];
+        int prevCell = neighbourIndex(cell / cols, cell % cols, dir, -1);
+        if (prevCell != -1) updateVertex(prevCell * 4 + dir.ordinal());
+        updateVertex(cell * 4 + DIRECTION.getPrevious(dir).ordinal());
+        updateVertex(cell * 4 + DIRECTION.getNext(dir).ordinal());
+    }
+
+    private void computeShortestPath() {
+        int start = startState();
+        while (!open.isEmpty() && (open.getPriority(open.peek()) < calculateKey(start) || rhs[start] != g[start])) {
+            int u = open.peek();
+            double oldKey = open.getPriority(u);
+            double newKey = calculateKey(u);
+
+            if (oldKey < newKey) {
+                open.update(u, newKey);
+            } else if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                open.remove(u);
+                updatePredecessors(u);
+            } else {
+                g[u] = INFINITE_COST;
+                updateVertex(u);
+                updatePredecessors(u);
+            }
+        }
+    }
+
+    /**
+     * Returns the movement towards the cheapest successor of the start state, preferring FORWARD on ties, or ERROR if
+     * no successor leads to the goal.
+     */
+    private MOVEMENT nextMove(int start) {
+        int best = INFINITE_COST;
+        MOVEMENT bestMove = MOVEMENT.ERROR;
+        for (int i = 0; i < 3; i++) {
+            int cost = successor(start, i);
+            if (cost >= INFINITE_COST || g[succState] >= INFINITE_COST) continue;
+            if (cost + g[succState] < best) {
+                best = cost + g[succState];
+                bestMove = (i == 0) ? MOVEMENT.FORWARD : (i == 1 ? MOVEMENT.RIGHT : MOVEMENT.LEFT);
+            }
+        }
+        return bestMove;
+    }
+}
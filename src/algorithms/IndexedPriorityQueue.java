@@ -0,0 +1,156 @@
+package algorithms;
+
+import java.util.Arrays;
+
+// @formatter:off
+/**
+ * Binary min-heap of integer keys in [0, capacity) ordered by a double priority. Used as the open list of the
+ * path planners, where the keys are packed cell indices (row * MAP_COLS + col).
+ *
+ * Keeps a reverse index from key to heap slot so that contains() is O(1) and decreaseKey() is O(log N).
+ */
+// @formatter:on
+
+public class IndexedPriorityQueue {
+    private final int[] heap;           // heap slot --> key
+    private final int[] slots;          // key --> heap slot, -1 if not queued
+    private final double[] priorities;  // key --> priority
+    private int size;
+
+    public IndexedPriorityQueue(int capacity) {
+        this.heap = new int[capacity];
+        this.slots = new int[capacity];
+        this.priorities = new double[capacity];
+        Arrays.fill(slots, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the key is currently in the queue.
+     */
+    public boolean contains(int key) {
+        return slots[key] != -1;
+    }
+
+    /**
+     * Returns the priority of a queued key.
+     */
+    public double getPriority(int key) {
+        return priorities[key];
+    }
+
+    /**
+     * Adds a key that is not yet in the queue.
+     */
+    public void insert(int key, double priority) {
+        priorities[key] = priority;
+        heap[size] = key;
+        slots[key] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lowers the priority of a queued key.
+     */
+    public void decreaseKey(int key, double priority) {
+        priorities[key] = priority;
+        siftUp(slots[key]);
+    }
+
+    /**
+     * Changes the priority of a queued key in either direction.
+     */
+    public void update(int key, double priority) {
+        double old = priorities[key];
+        priorities[key] = priority;
+        if (priority < old) {
+            siftUp(slots[key]);
+        } else {
+            siftDown(slots[key]);
+        }
+    }
+
+    /**
+     * Removes a queued key.
+     */
+    public void remove(int key) {
+        int slot = slots[key];
+        size--;
+        if (slot != size) {
+            int last = heap[size];
+            moveTo(last, slot);
+            siftDown(slot);
+            if (heap[slot] == last) siftUp(slot);
+        }
+        slots[key] = -1;
+    }
+
+    /**
+     * Returns the key with the lowest priority without removing it.
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Removes and returns the key with the lowest priority.
+     */
+    public int poll() {
+        int top = heap[0];
+        size--;
+        if (size > 0) {
+            moveTo(heap[size], 0);
+            siftDown(0);
+        }
+        slots[top] = -1;
+        return top;
+    }
+
+    /**
+     * Empties the queue. O(size), not O(capacity).
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            slots[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        int key = heap[slot];
+        double priority = priorities[key];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (priorities[heap[parent]] <= priority) break;
+            moveTo(heap[parent], slot);
+            slot = parent;
+        }
+        moveTo(key, slot);
+    }
+
+    private void siftDown(int slot) {
+        int key = heap[slot];
+        double priority = priorities[key];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            if (child + 1 < size && priorities[heap[child + 1]] < priorities[heap[child]]) child++;
+            if (priority <= priorities[heap[child]]) break;
+            moveTo(heap[child], slot);
+            slot = child;
+        }
+        moveTo(key, slot);
+    }
+
+    private void moveTo(int key, int slot) {
+        heap[slot] = key;
+        slots[key] = slot;
+    }
+}
@@ -0,0 +1,282 @@
+package algorithms;
+
+import robot.RobotConstants.DIRECTION;
+
+import java.util.Arrays;
+import java.util.List;
+
+// @formatter:off
+/**
+ * Chooses the order in which to visit a set of targets, given heading-aware costs between them.
+ *
+ * Nodes are the start (node 0) and the targets (node i + 1 for target i). Since the cost of a leg depends on the
+ * direction the robot faces when it starts the leg, costs are indexed by (node, heading):
+ *
+ * costs[node * 4 + heading][target]    = cost of the leg, or CostToGoTable.UNREACHABLE
+ * arrivals[node * 4 + heading][target] = ordinal of the direction the robot faces at the end of the leg
+ *
+ * Up to EXACT_LIMIT targets are ordered exactly with a Held-Karp dynamic program over (visited set, last target,
+ * heading). Larger sets start from nearest-neighbour and are improved with 2-opt and Or-opt passes until neither
+ * helps or the time budget runs out.
+ */
+// @formatter:on
+
+public class TourPlanner {
+    public static final int EXACT_LIMIT = 10;
+
+    private static final long INFINITE_COST = Long.MAX_VALUE / 4;
+
+    private final int numTargets;
+    private final int[][] costs;
+    private final int[][] arrivals;
+    private final int startDir;
+    private long timeBudget = Long.MAX_VALUE;   // in ms, only bounds the local search of larger sets
+    private long deadline;
+
+    public TourPlanner(int numTargets, int[][] costs, int[][] arrivals, int startDir) {
+        this.numTargets = numTargets;
+        this.costs = costs;
+        this.arrivals = arrivals;
+        this.startDir = startDir;
+    }
+
+    /**
+     * Builds a planner over waypoints, where tables.get(i) is the cost-to-go table towards targets.get(i) and the
+     * robot starts at [startRow, startCol] facing startDir. Each table is read once, in order.
+     */
+    public static TourPlanner forWaypoints(List<Waypoint> targets, List<CostToGoTable> tables, int startRow, int startCol, DIRECTION startDir) {
+        int n = targets.size();
+        int[][] costs = new int[(n + 1) * 4][n];
+        int[][] arrivals = new int[(n + 1) * 4][n];
+        for (int[] row : costs) {
+            Arrays.fill(row, CostToGoTable.UNREACHABLE);
+        }
+
+        for (int to = 0; to < n; to++) {
+            CostToGoTable table = tables.get(to);
+            int from = startDir.ordinal();
+            costs[from][to] = table.getCost(startRow, startCol, startDir);
+            if (costs[from][to] != CostToGoTable.UNREACHABLE) {
+                arrivals[from][to] = table.getArrivalDir(startRow, startCol, startDir).ordinal();
+            }
+
+            for (int node = 0; node < n; node++) {
+                if (node == to) continue;
+                Waypoint w = targets.get(node);
+                for (DIRECTION h : DIRECTION.values()) {
+                    if (w.getDir() != null && w.getDir() != h) continue;
+                    int cost = table.getCost(w.getRow(), w.getCol(), h);
+                    if (cost == CostToGoTable.UNREACHABLE) continue;
+
+                    from = (node + 1) * 4 + h.ordinal();
+                    costs[from][to] = cost;
+                    arrivals[from][to] = table.getArrivalDir(w.getRow(), w.getCol(), h).ordinal();
+                }
+            }
+        }
+
+        return new TourPlanner(n, costs, arrivals, startDir.ordinal());
+    }
+
+    /**
+     * Limits the time spent improving the order of sets larger than EXACT_LIMIT.
+     */
+    public void setTimeBudget(long millis) {
+        this.timeBudget = millis;
+    }
+
+    /**
+     * Returns the order in which to visit the targets, as target indices.
+     */
+    public int[] solve() {
+        if (numTargets <= 1) {
+            int[] order = new int[numTargets];
+            if (numTargets == 1) order[0] = 0;
+            return order;
+        }
+        if (numTargets <= EXACT_LIMIT) {
+            return solveExact();
+        }
+        deadline = timeBudget == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeBudget;
+        int[] order = nearestNeighbour();
+        long cost = tourCost(order);
+        while (System.currentTimeMillis() < deadline) {
+            long improved = orOpt(order, twoOpt(order, cost));
+            if (improved >= cost) break;
+            cost = improved;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the total cost of visiting the targets in the given order, or INFINITE_COST if a leg is unreachable.
+     */
+    public long tourCost(int[] order) {
+        long total = 0;
+        int from = startDir;    // node 0
+        for (int target : order) {
+            int cost = costs[from][target];
+            if (cost == CostToGoTable.UNREACHABLE) return INFINITE_COST;
+            total += cost;
+            from = (target + 1) * 4 + arrivals[from][target];
+        }
+        return total;
+    }
+
+    /**
+     * Held-Karp over (visited set, last target, heading at last target).
+     */
+    private int[] solveExact() {
+        int numSets = 1 << numTargets;
+        long[] dp = new long[numSets * numTargets * 4];
+        int[] parent = new int[dp.length];
+        Arrays.fill(dp, INFINITE_COST);
+        Arrays.fill(parent, -1);
+
+        for (int t = 0; t < numTargets; t++) {
+            int cost = costs[startDir][t];
+            if (cost == CostToGoTable.UNREACHABLE) continue;
+            int idx = ((1 << t) * numTargets + t) * 4 + arrivals[startDir][t];
+            dp[idx] = cost;
+        }
+
+        for (int set = 1; set < numSets; set++) {
+            for (int last = 0; last < numTargets; last++) {
+                if ((set & (1 << last)) == 0) continue;
+                for (int h = 0; h < 4; h++) {
+                    int idx = (set * numTargets + last) * 4 + h;
+                    if (dp[idx] >= INFINITE_COST) continue;
+
+                    int from = (last + 1) * 4 + h;
+                    for (int next = 0; next < numTargets; next++) {
+                        if ((set & (1 << next)) != 0) continue;
+                        int cost = costs[from][next];
+                        if (cost == CostToGoTable.UNREACHABLE) continue;
+
+                        int nextIdx = ((set | (1 << next)) * numTargets + next) * 4 + arrivals[from][next];
+                        if (dp[idx] + cost < dp[nextIdx]) {
+                            dp[nextIdx] = dp[idx] + cost;
+                            parent[nextIdx] = idx;
+                        }
+                    }
+                }
+            }
+        }
+
+        int best = -1;
+        int full = numSets - 1;
+        for (int last = 0; last < numTargets; last++) {
+            for (int h = 0; h < 4; h++) {
+                int idx = (full * numTargets + last) * 4 + h;
+                if (dp[idx] < INFINITE_COST && (best == -1 || dp[idx] < dp[best])) best = idx;
+            }
+        }
+        if (best == -1) return nearestNeighbour();
+
+        int[] order = new int[numTargets];
+        for (int i = numTargets - 1, idx = best; i >= 0; i--, idx = parent[idx]) {
+            order[i] = (idx / 4) % numTargets;
+        }
+        return order;
+    }
+
+    /**
+     * Greedy order: always go to the cheapest unvisited target next.
+     */
+    private int[] nearestNeighbour() {
+        int[] order = new int[numTargets];
+        boolean[] visited = new boolean[numTargets];
+        int from = startDir;
+        for (int i = 0; i < numTargets; i++) {
+            int best = -1;
+            for (int t = 0; t < numTargets; t++) {
+                if (visited[t]) continue;
+                if (best == -1 || costs[from][t] < costs[from][best]) best = t;
+            }
+            visited[best] = true;
+            order[i] = best;
+            if (costs[from][best] != CostToGoTable.UNREACHABLE) {
+                from = (best + 1) * 4 + arrivals[from][best];
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Reverses segments of the order while that lowers the tour cost. Legs are not symmetric once headings are taken
+     * into account, so every candidate is re-costed in full. Returns the new tour cost.
+     */
+    private long twoOpt(int[] order, long bestCost) {
+        boolean improved = true;
+        while (improved && System.currentTimeMillis() < deadline) {
+            improved = false;
+            for (int i = 0; i < numTargets - 1; i++) {
+                for (int k = i + 1; k < numTargets; k++) {
+                    reverse(order, i, k);
+                    long cost = tourCost(order);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        improved = true;
+                    } else {
+                        reverse(order, i, k);
+                    }
+                }
+            }
+        }
+        return bestCost;
+    }
+
+    /**
+     * Moves runs of up to 3 consecutive targets to every other position in the order, keeping a move whenever it
+     * lowers the tour cost. Returns the new tour cost.
+     */
+    private long orOpt(int[] order, long bestCost) {
+        int[] candidate = new int[numTargets];
+        boolean improved = true;
+        while (improved && System.currentTimeMillis() < deadline) {
+            improved = false;
+            for (int len = 1; len <= 3; len++) {
+                for (int i = 0; i + len <= numTargets; i++) {
+                    for (int j = 0; j + len <= numTargets; j++) {
+                        if (j == i) continue;
+                        moveSegment(order, candidate, i, len, j);
+                        long cost = tourCost(candidate);
+                        if (cost < bestCost) {
+                            bestCost = cost;
+                            System.arraycopy(candidate, 0, order, 0, numTargets);
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+        return bestCost;
+    }
+
+    /**
+     * Writes into dest the order with the run order[i, i + len) removed and re-inserted so that it starts at j.
+     */
+    private static void moveSegment(int[] order, int[] dest, int i, int len, int j) {
+        int n = order.length;
+        int k = 0;
+        for (int idx = 0; idx < n; idx++) {
+            if (idx >= i && idx < i + len) continue;
+            if (k == j) {
+                System.arraycopy(order, i, dest, k, len);
+                k += len;
+            }
+            dest[k++] = order[idx];
+        }
+        if (k == j) {
+            System.arraycopy(order, i, dest, k, len);
+        }
+    }
+
+    private static void reverse(int[] order, int i, int k) {
+        while (i < k) {
+            int tmp = order[i];
+            order[i++] = order[k];
+            order[k--] = tmp;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package algorithms;
+
+import robot.RobotConstants.DIRECTION;
+
+/**
+ * A target cell for the multi-goal fastest path, optionally with the direction the robot has to face on arrival.
+ */
+
+public class Waypoint {
+    private final int row;
+    private final int col;
+    private final DIRECTION dir;    // null if any direction will do
+
+    public Waypoint(int row, int col) {
+        this(row, col, null);
+    }
+
+    public Waypoint(int row, int col, DIRECTION dir) {
+        this.row = row;
+        this.col = col;
+        this.dir = dir;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public DIRECTION getDir() {
+        return dir;
+    }
+
+    @Override
+    public String toString() {
+        if (dir == null) return "(" + row + ", " + col + ")";
+        return "(" + row + ", " + col + ", " + DIRECTION.print(dir) + ")";
+    }
+}
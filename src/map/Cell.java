@@ -3,19 +3,19 @@ package map;
 import java.awt.*;
 
 /**
- * Represents each cell in the map grid.
+ * Represents each cell in the map grid. The cell's state lives in the bit planes of its Map; a Cell is only a view
+ * onto them.
  *
  * @author Suyash Lakhotia
  */
 
 public class Cell {
+    private final Map map;
     private final int row;
     private final int col;
-    private boolean isObstacle;
-    private boolean isVirtualWall;
-    private boolean isExplored;
 
-    public Cell(int row, int col) {
+    Cell(Map map, int row, int col) {
+        this.map = map;
         this.row = row;
         this.col = col;
     }
@@ -33,32 +33,26 @@ public class Cell {
     }
 
     public void setIsObstacle(boolean val) {
-        this.isObstacle = val;
+        map.setObstacleCell(row, col, val);
     }
 
     public boolean getIsObstacle() {
-        return this.isObstacle;
+        return map.isObstacleCell(row, col);
     }
 
     public void setVirtualWall(boolean val) {
-        if (val) {
-            this.isVirtualWall = true;
-        } else {
-            if (row != 0 && row != MapConstants.MAP_ROWS - 1 && col != 0 && col != MapConstants.MAP_COLS - 1) {
-                this.isVirtualWall = false;
-            }
-        }
+        map.setVirtualWallFlag(row, col, val);
     }
 
     public boolean getIsVirtualWall() {
-        return this.isVirtualWall;
+        return map.isVirtualWallCell(row, col);
     }
 
     public void setIsExplored(boolean val) {
-        this.isExplored = val;
+        map.setExploredCell(row, col, val);
     }
 
     public boolean getIsExplored() {
-        return this.isExplored;
+        return map.isExploredCell(row, col);
     }
 }
@@ -3,13 +3,12 @@ import java.util.*;
 
 import robot.Robot;
 import robot.RobotConstants;
-import sun.java2d.Surface;
-import sun.lwawt.macosx.CSystemTray;
 
 import java.lang.*;
 import javax.swing.*;
 import java.awt.*;
 import java.lang.reflect.Array;
+import java.nio.LongBuffer;
 import java.util.List;
 
 import static robot.RobotConstants.DIRECTION.NORTH;
@@ -21,42 +20,153 @@ import static robot.RobotConstants.DIRECTION.NORTH;
  */
 
 public class Map extends JPanel {
-    private final Cell[][] grid;
+    private static final long serialVersionUID = 1L;
+
+    private final int rows;
+    private final int cols;
+    private int startRow;                 // centre of the start zone
+    private int startCol;
+    private int goalRow;                  // centre of the goal zone
+    private int goalCol;
+    private final Cell[][] grid;          // views onto the bit planes below
+    private final long[] explored;        // bit (row * cols + col) set if the cell is explored
+    private final long[] obstacles;       // ... if the cell is an obstacle
+    private final long[] virtualWalls;    // ... if the cell is a virtual wall
+    private final long[] dirty;           // ... if the cell's explored or obstacle state changed since clearDirtyCells()
+    private final long[] frontier;        // ... if the cell is unexplored next to an explored cell that is not an obstacle
+    private final int[] wallCounts;       // cell index --> number of obstacles within wallRadius of the cell
+    private final short[] logOdds;        // cell index --> evidence that the cell is an obstacle, see fuseOccupancy()
+    private volatile int exploredCount;           // num of explored cells
+    private volatile int obstacleCount;           // num of obstacle cells, explored or not
+    private volatile int exploredObstacleCount;   // num of explored obstacle cells
+    private final int regionCols;         // num of REGION_SIZE x REGION_SIZE regions across, the last may be smaller
+    private final int[] regionExplored;   // region index --> num of explored cells in the region
+    private final int[] regionObstacles;  // region index --> num of explored obstacle cells in the region
+    private int wallRadius = MapConstants.ROBOT_RADIUS;
     private final Robot bot;
-    private static List<List<Integer>> imageCoverage = new ArrayList<List<Integer>>();
-    private static List<List<Integer>> cameraPos = new ArrayList<List<Integer>>();
+    private List<List<Integer>> imageCoverage = new ArrayList<List<Integer>>();
+    private List<List<Integer>> cameraPos = new ArrayList<List<Integer>>();
     private List<List<Integer>> imagePos = new ArrayList<List<Integer>>();
-    private static boolean takeImage = false;
-    private static int stepCount = 2;
-    private static RobotConstants.DIRECTION prev_d = NORTH;
-    private static List<ObsSurface> surfaceCoverage = new ArrayList<ObsSurface>();
-    public static HashMap<String, ObsSurface> surfaceTaken = new HashMap<String, ObsSurface>();
-    private static List<ObsSurface> notYetTakenList = new ArrayList<ObsSurface>();
-    private static List<ObsSurface> notAccessibleSurface = new ArrayList<ObsSurface>();
+    private boolean takeImage = false;
+    private int stepCount = 2;
+    private RobotConstants.DIRECTION prev_d = NORTH;
+    private List<ObsSurface> surfaceCoverage = new ArrayList<ObsSurface>();
+    private HashMap<String, ObsSurface> surfaceTaken = new HashMap<String, ObsSurface>();
+    private List<ObsSurface> notYetTakenList = new ArrayList<ObsSurface>();
+    private List<ObsSurface> notAccessibleSurface = new ArrayList<ObsSurface>();
     private boolean makeUpImageRun = false;
     private boolean arriveAtImagePos = false;
+    private boolean headless = false;   // if set, repaint() only takes images and nothing is drawn
+    private int version = 0;    // incremented whenever the obstacle layout or the set of visitable cells changes
 
     /**
-     * Initialises a Map object with a grid of Cell objects.
+     * Initialises a Map object with a grid of Cell objects for the standard MAP_ROWS x MAP_COLS arena.
      */
     public Map(Robot bot) {
-        this.bot = bot;
+        this(bot, MapConstants.MAP_ROWS, MapConstants.MAP_COLS);
+    }
 
-        grid = new Cell[MapConstants.MAP_ROWS][MapConstants.MAP_COLS];
+    /**
+     * Initialises a Map object for an arena of the given size. The START and GOAL zones are in the bottom-left and
+     * top-right corners, as in the standard arena.
+     */
+    public Map(Robot bot, int rows, int cols) {
+        this.bot = bot;
+        this.rows = rows;
+        this.cols = cols;
+        this.startRow = wallRadius;
+        this.startCol = wallRadius;
+        this.goalRow = rows - 1 - wallRadius;
+        this.goalCol = cols - 1 - wallRadius;
+
+        int words = (rows * cols + 63) >>> 6;
+        explored = new long[words];
+        obstacles = new long[words];
+        virtualWalls = new long[words];
+        dirty = new long[words];
+        frontier = new long[words];
+        wallCounts = new int[rows * cols];
+        logOdds = new short[rows * cols];
+        regionCols = (cols + MapConstants.REGION_SIZE - 1) / MapConstants.REGION_SIZE;
+        int regionRows = (rows + MapConstants.REGION_SIZE - 1) / MapConstants.REGION_SIZE;
+        regionExplored = new int[regionRows * regionCols];
+        regionObstacles = new int[regionRows * regionCols];
+
+        grid = new Cell[rows][cols];
         for (int row = 0; row < grid.length; row++) {
             for (int col = 0; col < grid[0].length; col++) {
-                grid[row][col] = new Cell(row, col);
+                grid[row][col] = new Cell(this, row, col);
+            }
+        }
+        setBorderWalls();
+    }
 
-                // Set the virtual walls of the arena
-                if (row == 0 || col == 0 || row == MapConstants.MAP_ROWS - 1 || col == MapConstants.MAP_COLS - 1) {
-                    grid[row][col].setVirtualWall(true);
+    /**
+     * Sets the virtual walls of the arena border.
+     */
+    private void setBorderWalls() {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (isBorder(row, col)) {
+                    setBit(virtualWalls, row, col, true);
                 }
             }
         }
     }
 
+    /**
+     * Returns true if the robot's footprint would stick out of the arena with its centre on the cell.
+     */
+    private boolean isBorder(int row, int col) {
+        return row < wallRadius || col < wallRadius || row >= rows - wallRadius || col >= cols - wallRadius;
+    }
+
+    private boolean getBit(long[] plane, int row, int col) {
+        int i = row * cols + col;
+        return (plane[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private void setBit(long[] plane, int row, int col, boolean val) {
+        int i = row * cols + col;
+        if (val) {
+            plane[i >>> 6] |= 1L << i;
+        } else {
+            plane[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * Returns true if any bit of the plane in [from, to) is set.
+     */
+    private static boolean anyBit(long[] plane, int from, int to) {
+        int fromWord = from >>> 6;
+        int toWord = (to - 1) >>> 6;
+        for (int w = fromWord; w <= toWord; w++) {
+            long mask = -1L;
+            if (w == fromWord) mask &= -1L << from;
+            if (w == toWord) mask &= -1L >>> (63 - ((to - 1) & 63));
+            if ((plane[w] & mask) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if all bits of the plane in [from, to) are set.
+     */
+    private static boolean allBits(long[] plane, int from, int to) {
+        int fromWord = from >>> 6;
+        int toWord = (to - 1) >>> 6;
+        for (int w = fromWord; w <= toWord; w++) {
+            long mask = -1L;
+            if (w == fromWord) mask &= -1L << from;
+            if (w == toWord) mask &= -1L >>> (63 - ((to - 1) & 63));
+            if ((plane[w] & mask) != mask) return false;
+        }
+        return true;
+    }
+
     public boolean checkValidCell(int row, int col) {
-        boolean res = row >= 0 && col >= 0 && row < MapConstants.MAP_ROWS && col < MapConstants.MAP_COLS;
+        boolean res = row >= 0 && col >= 0 && row < rows && col < cols;
         return res;
     }
     public Cell getCell(Point pos) {
@@ -97,21 +207,93 @@ public class Map extends JPanel {
      * Returns true if the row and column values are valid.
      */
     public boolean checkValidCoordinates(int row, int col) {
-        return row >= 0 && col >= 0 && row < MapConstants.MAP_ROWS && col < MapConstants.MAP_COLS;
+        return row >= 0 && col >= 0 && row < rows && col < cols;
     }
 
     /**
      * Returns true if the row and column values are in the start zone.
      */
     private boolean inStartZone(int row, int col) {
-        return row >= 0 && row <= 2 && col >= 0 && col <= 2;
+        return Math.abs(row - startRow) <= wallRadius && Math.abs(col - startCol) <= wallRadius;
     }
 
     /**
      * Returns true if the row and column values are in the goal zone.
      */
     private boolean inGoalZone(int row, int col) {
-        return (row <= MapConstants.GOAL_ROW + 1 && row >= MapConstants.GOAL_ROW - 1 && col <= MapConstants.GOAL_COL + 1 && col >= MapConstants.GOAL_COL - 1);
+        return Math.abs(row - goalRow) <= wallRadius && Math.abs(col - goalCol) <= wallRadius;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the total number of cells.
+     */
+    public int getNumCells() {
+        return rows * cols;
+    }
+
+    public int getStartRow() {
+        return startRow;
+    }
+
+    public int getStartCol() {
+        return startCol;
+    }
+
+    public int getGoalRow() {
+        return goalRow;
+    }
+
+    public int getGoalCol() {
+        return goalCol;
+    }
+
+    /**
+     * Moves the centre of the START zone. Obstacles in the new zone are removed and its cells are marked explored.
+     */
+    public void setStart(int row, int col) {
+        this.startRow = row;
+        this.startCol = col;
+        clearZone(row, col);
+    }
+
+    /**
+     * Moves the centre of the GOAL zone. Obstacles in the new zone are removed and its cells are marked explored.
+     */
+    public void setGoal(int row, int col) {
+        this.goalRow = row;
+        this.goalCol = col;
+        clearZone(row, col);
+    }
+
+    /**
+     * Removes the obstacles in the zone around [row, col] and marks its cells explored.
+     */
+    private void clearZone(int row, int col) {
+        version++;
+        for (int r = row - wallRadius; r <= row + wallRadius; r++) {
+            for (int c = col - wallRadius; c <= col + wallRadius; c++) {
+                if (!checkValidCoordinates(r, c)) continue;
+                setObstacleCell(r, c, false);
+                setExploredCell(r, c, true);
+            }
+        }
+    }
+
+    /**
+     * Returns the version of the obstacle layout and of the visitable cells. Anything derived from the obstacles,
+     * virtual walls or isVisitableCell() (e.g. cached cost tables) stays valid for as long as the version is
+     * unchanged.
+     */
+    public int getVersion() {
+        return version;
     }
 
     /**
@@ -121,86 +303,487 @@ public class Map extends JPanel {
         return grid[row][col];
     }
 
+    /**
+     * Returns true if a cell is explored.
+     */
+    public boolean isExploredCell(int row, int col) {
+        return getBit(explored, row, col);
+    }
+
     /**
      * Returns true if a cell is an obstacle.
      */
     public boolean isObstacleCell(int row, int col) {
-        return grid[row][col].getIsObstacle();
+        return getBit(obstacles, row, col);
+    }
+
+    /**
+     * Returns true if the cell with index i (row * cols + col) is explored.
+     */
+    public boolean isExploredCell(int i) {
+        return (explored[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns true if the cell with index i (row * cols + col) is an obstacle.
+     */
+    public boolean isObstacleCell(int i) {
+        return (obstacles[i >>> 6] & (1L << i)) != 0;
     }
 
     /**
      * Returns true if a cell is a virtual wall.
      */
     public boolean isVirtualWallCell(int row, int col) {
-        return grid[row][col].getIsVirtualWall();
+        return getBit(virtualWalls, row, col);
     }
 
     /**
-     * Sets all cells in the grid to an explored state.
+     * Returns true if the robot can stand on a cell, i.e. it is explored, not an obstacle and not a virtual wall.
      */
-    public void setAllExplored() {
-        for (int row = 0; row < grid.length; row++) {
-            for (int col = 0; col < grid[0].length; col++) {
-                grid[row][col].setIsExplored(true);
+    public boolean isVisitableCell(int row, int col) {
+        int i = row * cols + col;
+        return ((explored[i >>> 6] & ~obstacles[i >>> 6] & ~virtualWalls[i >>> 6]) & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns the explored flags of 64 cells, bit k for cell index (row * cols + col) w * 64 + k.
+     */
+    public long getExploredWord(int w) {
+        return explored[w];
+    }
+
+    /**
+     * Returns the obstacle flags of 64 cells, bit k for cell index (row * cols + col) w * 64 + k.
+     */
+    public long getObstacleWord(int w) {
+        return obstacles[w];
+    }
+
+    /**
+     * Returns true if every cell of the row in [fromCol, toCol] is explored.
+     */
+    public boolean isRowExplored(int row, int fromCol, int toCol) {
+        int base = row * cols;
+        return allBits(explored, base + fromCol, base + toCol + 1);
+    }
+
+    /**
+     * Returns true if any cell of the row in [fromCol, toCol] is an obstacle.
+     */
+    public boolean hasObstacleInRow(int row, int fromCol, int toCol) {
+        int base = row * cols;
+        return anyBit(obstacles, base + fromCol, base + toCol + 1);
+    }
+
+    /**
+     * Marks the cell with index i (row * cols + col) as explored. Costs one bit test if it already is.
+     */
+    public void setExploredCell(int i) {
+        if ((explored[i >>> 6] & (1L << i)) == 0) setExploredCell(i / cols, i % cols, true);
+    }
+
+    /**
+     * Sets the cell with index i (row * cols + col) as an obstacle. Costs one bit test if it already is.
+     */
+    public void setObstacleCell(int i) {
+        if ((obstacles[i >>> 6] & (1L << i)) == 0) setObstacleCell(i / cols, i % cols, true);
+    }
+
+    /**
+     * Marks a cell as explored or unexplored.
+     */
+    public void setExploredCell(int row, int col, boolean val) {
+        if (getBit(explored, row, col) == val) return;
+        setBit(explored, row, col, val);
+        setBit(dirty, row, col, true);
+        if (!getBit(obstacles, row, col) && !getBit(virtualWalls, row, col)) version++;      // visitability changed
+        updateFrontier(row, col);
+
+        int delta = val ? 1 : -1;
+        int region = regionOf(row, col);
+        exploredCount += delta;
+        regionExplored[region] += delta;
+        if (getBit(obstacles, row, col)) {
+            exploredObstacleCount += delta;
+            regionObstacles[region] += delta;
+        }
+    }
+
+    /**
+     * Returns the number of explored cells. Kept up to date on every change, so it is cheap to read at any time,
+     * also from another thread (e.g. for live metrics) while the exploration thread changes the map.
+     */
+    public int getExploredCount() {
+        return exploredCount;
+    }
+
+    /**
+     * Returns the number of obstacle cells, explored or not.
+     */
+    public int getObstacleCount() {
+        return obstacleCount;
+    }
+
+    /**
+     * Returns the number of explored cells that are not obstacles.
+     */
+    public int getFreeCount() {
+        return exploredCount - exploredObstacleCount;
+    }
+
+    /**
+     * Returns the number of regions across the map. The map is split into regions of REGION_SIZE x REGION_SIZE cells
+     * from [0, 0]; the regions in the last row and column are smaller if the map size is not a multiple of it.
+     */
+    public int getRegionCols() {
+        return regionCols;
+    }
+
+    public int getRegionRows() {
+        return regionExplored.length / regionCols;
+    }
+
+    /**
+     * Returns the number of explored cells in the region [regionRow, regionCol].
+     */
+    public int getRegionExplored(int regionRow, int regionCol) {
+        return regionExplored[regionRow * regionCols + regionCol];
+    }
+
+    /**
+     * Returns the number of explored obstacle cells in the region [regionRow, regionCol].
+     */
+    public int getRegionObstacles(int regionRow, int regionCol) {
+        return regionObstacles[regionRow * regionCols + regionCol];
+    }
+
+    /**
+     * Returns the number of cells in the region [regionRow, regionCol].
+     */
+    public int getRegionCells(int regionRow, int regionCol) {
+        int size = MapConstants.REGION_SIZE;
+        return (Math.min(rows, (regionRow + 1) * size) - regionRow * size) * (Math.min(cols, (regionCol + 1) * size) - regionCol * size);
+    }
+
+    private int regionOf(int row, int col) {
+        return row / MapConstants.REGION_SIZE * regionCols + col / MapConstants.REGION_SIZE;
+    }
+
+    /**
+     * Recounts all the counts from the bit planes, after an update of the whole grid.
+     */
+    private void recount() {
+        int numExplored = 0;
+        int numObstacles = 0;
+        int numExploredObstacles = 0;
+        for (int w = 0; w < explored.length; w++) {
+            numExplored += Long.bitCount(explored[w]);
+            numObstacles += Long.bitCount(obstacles[w]);
+            numExploredObstacles += Long.bitCount(explored[w] & obstacles[w]);
+        }
+        exploredCount = numExplored;
+        obstacleCount = numObstacles;
+        exploredObstacleCount = numExploredObstacles;
+
+        Arrays.fill(regionExplored, 0);
+        Arrays.fill(regionObstacles, 0);
+        for (int w = 0; w < explored.length; w++) {
+            for (long word = explored[w]; word != 0; word &= word - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                int region = regionOf(i / cols, i % cols);
+                regionExplored[region]++;
+                if (getBit(obstacles, i / cols, i % cols)) regionObstacles[region]++;
             }
         }
     }
 
     /**
-     * Sets all cells in the grid to an unexplored state except for the START & GOAL zone.
+     * Returns true if a cell is unexplored and next to (not diagonally) an explored cell that is not an obstacle, i.e.
+     * it is on the border between the explored and the unexplored part of the arena.
      */
-    public void setAllUnexplored() {
-        for (int row = 0; row < grid.length; row++) {
-            for (int col = 0; col < grid[0].length; col++) {
-                if (inStartZone(row, col) || inGoalZone(row, col)) {
-                    grid[row][col].setIsExplored(true);
-                } else {
-                    grid[row][col].setIsExplored(false);
-                }
+    public boolean isFrontierCell(int row, int col) {
+        return getBit(frontier, row, col);
+    }
+
+    /**
+     * Returns the index (row * cols + col) of the first frontier cell at or after from, or -1 if there is none.
+     */
+    public int nextFrontierCell(int from) {
+        int w = from >>> 6;
+        if (w >= frontier.length) return -1;
+        long word = frontier[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == frontier.length) return -1;
+            word = frontier[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Updates the frontier flags of a cell and its neighbours after the cell's explored or obstacle state changed.
+     */
+    private void updateFrontier(int row, int col) {
+        updateFrontierFlag(row, col);
+        updateFrontierFlag(row + 1, col);
+        updateFrontierFlag(row - 1, col);
+        updateFrontierFlag(row, col + 1);
+        updateFrontierFlag(row, col - 1);
+    }
+
+    private void updateFrontierFlag(int row, int col) {
+        if (!checkValidCoordinates(row, col)) return;
+        boolean val = !getBit(explored, row, col)
+                && (isOpenCell(row + 1, col) || isOpenCell(row - 1, col) || isOpenCell(row, col + 1) || isOpenCell(row, col - 1));
+        setBit(frontier, row, col, val);
+    }
+
+    private boolean isOpenCell(int row, int col) {
+        return checkValidCoordinates(row, col) && getBit(explored, row, col) && !getBit(obstacles, row, col);
+    }
+
+    /**
+     * Recomputes the frontier flags of every cell, after an update of the whole grid.
+     */
+    private void rebuildFrontier() {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                updateFrontierFlag(row, col);
             }
         }
     }
 
     /**
-     * Sets a cell as an obstacle and the surrounding cells as virtual walls or resets the cell and surrounding
-     * virtual walls.
+     * Returns the number of cells whose explored or obstacle state changed since the last clearDirtyCells().
      */
-    public void setObstacleCell(int row, int col, boolean obstacle) {
-        if (obstacle && (inStartZone(row, col) || inGoalZone(row, col)))
-            return;
+    public int getDirtyCount() {
+        int count = 0;
+        for (long w : dirty) {
+            count += Long.bitCount(w);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index (row * cols + col) of the first changed cell at or after from, or -1 if there is none.
+     */
+    public int nextDirtyCell(int from) {
+        int w = from >>> 6;
+        if (w >= dirty.length) return -1;
+        long word = dirty[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == dirty.length) return -1;
+            word = dirty[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    public void clearDirtyCells() {
+        Arrays.fill(dirty, 0L);
+    }
+
+    /**
+     * Marks every cell as changed, after an update of the whole grid.
+     */
+    private void setAllDirty() {
+        Arrays.fill(dirty, -1L);
+        int tail = getNumCells() & 63;
+        if (tail != 0) dirty[dirty.length - 1] = -1L >>> (64 - tail);
+    }
+
+    /**
+     * Sets or clears the virtual wall flag of a cell. Virtual walls along the arena border or next to an obstacle are
+     * never cleared.
+     */
+    void setVirtualWallFlag(int row, int col, boolean val) {
+        if (val || (!isBorder(row, col) && wallCounts[row * cols + col] == 0)) {
+            setBit(virtualWalls, row, col, val);
+        }
+    }
+
+    /**
+     * Returns the number of cells around an obstacle that are virtual walls in each direction.
+     */
+    public int getWallRadius() {
+        return wallRadius;
+    }
 
-        grid[row][col].setIsObstacle(obstacle);
+    /**
+     * Sets the number of cells around an obstacle that are virtual walls in each direction, i.e. how far the robot's
+     * footprint reaches from its centre. START and GOAL zones still in their default corners are moved so that they
+     * stay in the corners, then every virtual wall of the map is rebuilt.
+     */
+    public void setWallRadius(int radius) {
+        if (startRow == wallRadius && startCol == wallRadius) {
+            startRow = radius;
+            startCol = radius;
+        }
+        if (goalRow == rows - 1 - wallRadius && goalCol == cols - 1 - wallRadius) {
+            goalRow = rows - 1 - radius;
+            goalCol = cols - 1 - radius;
+        }
 
-        if (row >= 1) {
-            grid[row - 1][col].setVirtualWall(obstacle);            // bottom cell
+        version++;
+        wallRadius = radius;
+        rebuildWalls();
+    }
 
-            if (col < MapConstants.MAP_COLS - 1) {
-                grid[row - 1][col + 1].setVirtualWall(obstacle);    // bottom-right cell
+    /**
+     * Recomputes the wall counts and virtual walls from the obstacles.
+     */
+    private void rebuildWalls() {
+        Arrays.fill(wallCounts, 0);
+        Arrays.fill(virtualWalls, 0L);
+        setBorderWalls();
+        for (int w = 0; w < obstacles.length; w++) {
+            for (long word = obstacles[w]; word != 0; word &= word - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                updateWallCounts(i / cols, i % cols, 1);
             }
+        }
+    }
 
-            if (col >= 1) {
-                grid[row - 1][col - 1].setVirtualWall(obstacle);    // bottom-left cell
+    /**
+     * Replaces all obstacles with the bits at index of src, one long per 64 cells as in getObstacleWord(), and
+     * rebuilds the virtual walls. Obstacles in the START & GOAL zone are dropped.
+     */
+    public void loadObstacles(LongBuffer src, int index) {
+        version++;
+        src.get(index, obstacles);
+        Arrays.fill(logOdds, (short) 0);
+        int tail = getNumCells() & 63;
+        if (tail != 0) obstacles[obstacles.length - 1] &= -1L >>> (64 - tail);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (inStartZone(row, col) || inGoalZone(row, col)) setBit(obstacles, row, col, false);
             }
         }
+        rebuildWalls();
+        setAllDirty();
+        rebuildFrontier();
+        recount();
+    }
 
-        if (row < MapConstants.MAP_ROWS - 1) {
-            grid[row + 1][col].setVirtualWall(obstacle);            // top cell
+    /**
+     * Makes this map's grid a copy of another map's grid.
+     */
+    public void copyFrom(Map other) {
+        version++;
+        System.arraycopy(other.explored, 0, explored, 0, explored.length);
+        System.arraycopy(other.obstacles, 0, obstacles, 0, obstacles.length);
+        System.arraycopy(other.virtualWalls, 0, virtualWalls, 0, virtualWalls.length);
+        System.arraycopy(other.wallCounts, 0, wallCounts, 0, wallCounts.length);
+        System.arraycopy(other.logOdds, 0, logOdds, 0, logOdds.length);
+        wallRadius = other.wallRadius;
+        setAllDirty();
+        rebuildFrontier();
+        recount();
+    }
 
-            if (col < MapConstants.MAP_COLS - 1) {
-                grid[row + 1][col + 1].setVirtualWall(obstacle);    // top-right cell
-            }
+    /**
+     * Sets all cells in the grid to an explored state.
+     */
+    public void setAllExplored() {
+        version++;
+        Arrays.fill(explored, -1L);
+        Arrays.fill(logOdds, (short) 0);
+        int tail = getNumCells() & 63;
+        if (tail != 0) explored[explored.length - 1] = -1L >>> (64 - tail);
+        setAllDirty();
+        rebuildFrontier();
+        recount();
+    }
 
-            if (col >= 1) {
-                grid[row + 1][col - 1].setVirtualWall(obstacle);    // top-left cell
+    /**
+     * Sets all cells in the grid to an unexplored state except for the START & GOAL zone.
+     */
+    public void setAllUnexplored() {
+        version++;
+        Arrays.fill(explored, 0L);
+        Arrays.fill(logOdds, (short) 0);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (inStartZone(row, col) || inGoalZone(row, col)) {
+                    setBit(explored, row, col, true);
+                }
             }
         }
+        setAllDirty();
+        rebuildFrontier();
+        recount();
+    }
+
+    /**
+     * Adds evidence from one sensor reading to a cell's log-odds of being an obstacle (positive for a hit, negative
+     * for seeing through it, in 1/LOG_ODDS_SCALE) and returns whether the cell is an obstacle afterwards.
+     *
+     * The log-odds are clamped to +-LOG_ODDS_MAX. The cell becomes an obstacle once they reach LOG_ODDS_OCCUPIED and
+     * free once they drop to LOG_ODDS_FREE; in between it keeps its state, so one reading that disagrees with earlier
+     * ones does not flip it.
+     */
+    public boolean fuseOccupancy(int row, int col, int evidence) {
+        int i = row * cols + col;
+        int val = Math.max(-MapConstants.LOG_ODDS_MAX, Math.min(MapConstants.LOG_ODDS_MAX, logOdds[i] + evidence));
+        logOdds[i] = (short) val;
+        if (val >= MapConstants.LOG_ODDS_OCCUPIED) {
+            setObstacleCell(row, col, true);
+        } else if (val <= MapConstants.LOG_ODDS_FREE) {
+            setObstacleCell(row, col, false);
+        }
+        return isObstacleCell(row, col);
+    }
+
+    /**
+     * Returns a cell's log-odds of being an obstacle in 1/LOG_ODDS_SCALE, 0 if no reading has been fused into it.
+     */
+    public int getLogOdds(int row, int col) {
+        return logOdds[row * cols + col];
+    }
+
+    /**
+     * Sets a cell as an obstacle and the surrounding cells as virtual walls or resets the cell and surrounding
+     * virtual walls.
+     *
+     * Every cell counts the obstacles within wallRadius of it and is a virtual wall while its count is above zero, so
+     * removing an obstacle keeps the walls that a neighbouring obstacle still needs.
+     */
+    public void setObstacleCell(int row, int col, boolean obstacle) {
+        if (obstacle && (inStartZone(row, col) || inGoalZone(row, col)))
+            return;
+        if (isObstacleCell(row, col) == obstacle)
+            return;
 
-        if (col >= 1) {
-            grid[row][col - 1].setVirtualWall(obstacle);            // left cell
+        version++;
+        setBit(obstacles, row, col, obstacle);
+        setBit(dirty, row, col, true);
+        updateFrontier(row, col);
+
+        int delta = obstacle ? 1 : -1;
+        obstacleCount += delta;
+        if (getBit(explored, row, col)) {
+            exploredObstacleCount += delta;
+            regionObstacles[regionOf(row, col)] += delta;
         }
+        updateWallCounts(row, col, obstacle ? 1 : -1);
+    }
 
-        if (col < MapConstants.MAP_COLS - 1) {
-            grid[row][col + 1].setVirtualWall(obstacle);            // right cell
+    /**
+     * Adds delta to the wall counts of the cells around [row, col] and updates their virtual wall flags.
+     */
+    private void updateWallCounts(int row, int col, int delta) {
+        int fromRow = Math.max(0, row - wallRadius);
+        int toRow = Math.min(rows - 1, row + wallRadius);
+        int fromCol = Math.max(0, col - wallRadius);
+        int toCol = Math.min(cols - 1, col + wallRadius);
+
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromCol; c <= toCol; c++) {
+                if (r == row && c == col) continue;
+
+                int i = r * cols + c;
+                wallCounts[i] += delta;
+                setBit(virtualWalls, r, c, wallCounts[i] > 0 || isBorder(r, c));
+            }
         }
     }
 
@@ -208,7 +791,7 @@ public class Map extends JPanel {
      * Returns true if the given cell is out of bounds or an obstacle.
      */
     public boolean getIsObstacleOrWall(int row, int col) {
-        return !checkValidCoordinates(row, col) || getCell(row, col).getIsObstacle();
+        return !checkValidCoordinates(row, col) || isObstacleCell(row, col);
     }
 
     public boolean checkObstacleOTW(RobotConstants.DIRECTION d, int cam_r, int cam_c, int image_r, int image_c){
@@ -296,6 +879,63 @@ public class Map extends JPanel {
 
     }
 
+    /**
+     * Returns the obstacle surfaces the camera would see with the robot at [r, c] facing d. The camera looks out of
+     * the robot's left side, so e.g. facing NORTH it sees the RIGHT surfaces of obstacles to the west. A surface is
+     * visible if it lies within the camera's cone of depthLimit cells and no obstacle is in the way.
+     */
+    public List<ObsSurface> getVisibleSurfaces(RobotConstants.DIRECTION d, int r, int c) {
+        List<ObsSurface> visible = new ArrayList<ObsSurface>();
+        int depthLimit = 10;
+
+        for (int depth = 0; depth < depthLimit; depth++) {
+            for (int spreadth = 0; spreadth <= depth; spreadth++) {
+                // Both sides of the cone, once for the centre line.
+                for (int side = 1; side >= (spreadth == 0 ? 1 : -1); side -= 2) {
+                    int s = side * spreadth;
+                    int imageRow, imageCol, frontRow, frontCol;
+                    Direction surface;
+                    switch (d) {
+                        case NORTH:
+                            imageRow = r + s;
+                            imageCol = c - depth;
+                            frontRow = imageRow;
+                            frontCol = imageCol + 1;
+                            surface = Direction.RIGHT;
+                            break;
+                        case EAST:
+                            imageRow = r + depth;
+                            imageCol = c + s;
+                            frontRow = imageRow - 1;
+                            frontCol = imageCol;
+                            surface = Direction.DOWN;
+                            break;
+                        case SOUTH:
+                            imageRow = r + s;
+                            imageCol = c + depth;
+                            frontRow = imageRow;
+                            frontCol = imageCol - 1;
+                            surface = Direction.LEFT;
+                            break;
+                        default:
+                            imageRow = r - depth;
+                            imageCol = c + s;
+                            frontRow = imageRow + 1;
+                            frontCol = imageCol;
+                            surface = Direction.UP;
+                            break;
+                    }
+
+                    if (checkValidCoordinates(imageRow, imageCol) && isObstacleCell(imageRow, imageCol)
+                            && !isObstacleCell(frontRow, frontCol) && !checkObstacleOTW(d, r, c, imageRow, imageCol)) {
+                        visible.add(new ObsSurface(imageRow, imageCol, surface));
+                    }
+                }
+            }
+        }
+        return visible;
+    }
+
     public boolean computeImageCoverage(Graphics g,RobotConstants.DIRECTION d,int r,int c){
         boolean res_flag = false;
         if((takeImage&&!makeUpImageRun) || (makeUpImageRun&&arriveAtImagePos)) {
@@ -303,189 +943,106 @@ public class Map extends JPanel {
             takeImage = false;
             stepCount = 4;
             arriveAtImagePos = false;
-            List<Integer> res = new ArrayList<Integer>();
-
-            int x_offset = 120;
-            int y_offset = 30;
-            int size = 30;
-            int depthLimit = 10;
             System.out.println(d);
-            List<Integer> flag = new ArrayList<Integer>();
-            List<Integer> leftFlag = new ArrayList<Integer>();
-            List<Integer> rightFlag = new ArrayList<Integer>();
 
-            ObsSurface surface;
+            for (ObsSurface surface : getVisibleSurfaces(d, r, c)) {
+                imageCoverage.add(getSurfaceLine(surface));
+                surfaceTaken.put(surface.toString(), surface);
+                surfaceCoverage.add(surface);
+            }
+        }
+        else{
+            stepCount-=1;
+        }
+        return res_flag;
+    }
+
+    /**
+     * Returns the on-screen line [x1, y1, x2, y2] along an obstacle surface.
+     */
+    private List<Integer> getSurfaceLine(ObsSurface surface) {
+        int x_offset = GraphicsConstants.MAP_X_OFFSET;
+        int y_offset = GraphicsConstants.MAP_Y_OFFSET;
+        int size = GraphicsConstants.CELL_SIZE;
+        int x = x_offset + surface.getCol() * size;
+        int yTop = y_offset + (rows - surface.getRow() - 1) * size;
+        int yBottom = y_offset + (rows - surface.getRow()) * size;
+
+        switch (surface.getSurface()) {
+            case UP:
+                return Arrays.asList(x, yTop, x + size, yTop);
+            case DOWN:
+                return Arrays.asList(x, yBottom, x + size, yBottom);
+            case LEFT:
+                return Arrays.asList(x, yBottom, x, yTop);
+            default:
+                return Arrays.asList(x + size, yBottom, x + size, yTop);
+        }
+    }
+
+    /**
+     * Takes an image if the robot has just turned or arrived at an image position, and records where it was taken.
+     * Called on every paint, or on every repaint() when headless.
+     */
+    private void captureImage() {
+        RobotConstants.DIRECTION d = bot.getRobotCurDir();
+        int r = bot.getRobotPosRow();
+        int c = bot.getRobotPosCol();
+
+        if(d != prev_d)
+            takeImage = true;
+        prev_d = d;
 
+        if(computeImageCoverage(null,d,r,c)) {
+            List<Integer> pos = new ArrayList<>();
+            List<Integer> cPos = new ArrayList<>();
             switch (d) {
                 case NORTH:
-//                    c-=2;
-                    for (int depth = 0; depth < depthLimit; depth++){
-                        for (int spreadth = 0; spreadth <= depth; spreadth++){
-//                            if (flag.contains(spreadth))
-//                                continue;
-//                            if (rightFlag.isEmpty()||(spreadth>   Collections.max(rightFlag))){
-                            if (((r+spreadth < 20 ) && (c-depth >= 0)&& (grid[r + spreadth][c - depth].getIsObstacle())&&(!grid[r+spreadth][c-depth+1].getIsObstacle()))){
-                                if(!checkObstacleOTW(d,r,c,r+spreadth,c-depth)) {
-                                    res = Arrays.asList(x_offset + (c-depth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r+spreadth)) * size, x_offset + (c - depth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r+spreadth) - 1) * size);
-
-                                    flag.add(spreadth);
-                                    rightFlag.add(spreadth);
-                                    imageCoverage.add(res);
-
-                                    surface = new ObsSurface(r+spreadth,c-depth,Direction.RIGHT);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-                            if (((r - spreadth >= 0) && (c - depth >= 0) && (grid[r - spreadth][c - depth].getIsObstacle()) && (!grid[r - spreadth][c - depth + 1].getIsObstacle()))) {
-                                if(!checkObstacleOTW(d,r,c,r-spreadth,c-depth)) {
-                                    res = Arrays.asList(x_offset + (c - depth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r - spreadth)) * size, x_offset + (c - depth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r - spreadth) - 1) * size);
-                                    flag.add(spreadth);
-                                    leftFlag.add(spreadth);
-                                    imageCoverage.add(res);
-
-                                    surface = new ObsSurface(r-spreadth,c-depth,Direction.RIGHT);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-                        }
-                    }
-
+                    c+=1;
+                    pos = Arrays.asList(r,c);
+                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE  + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE + 15);
                     break;
                 case EAST:
-//                    r+=2;
-                    for (int depth = 0; depth < depthLimit; depth++){
-                        for (int spreadth = 0; spreadth <= depth; spreadth++){
-//                            if (flag.contains(spreadth))
-//                                continue;
-//                            if (((c+spreadth < 15 )&& (r+depth < 20) &&(grid[r+depth][c-spreadth].getIsObstacle()) &&(!grid[r+depth-1][c+spreadth].getIsObstacle()))){
-//                                    res = Arrays.asList(x_offset + (c + spreadth) * size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size, x_offset + (c + spreadth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size);
-//                                    flag.add(spreadth);
-//                                    rightFlag.add(spreadth);
-//                                    imageCoverage.add(res);
-//                                }
-//                            if (((c-spreadth >= 0 )&& (r+depth < 20)&&(grid[r+depth][c-spreadth].getIsObstacle()) &&(!grid[r+depth-1][c-spreadth].getIsObstacle()))) {
-//                                    res = Arrays.asList(x_offset + (c - spreadth) * size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size, x_offset + (c - spreadth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size);
-//                                    flag.add(spreadth);
-//                                    leftFlag.add(spreadth);
-//                                    imageCoverage.add(res);
-//                                }
-//                            if (rightFlag.isEmpty()||(spreadth> Collections.max(rightFlag))){
-                            if (((c+spreadth < 15 )&& (r+depth < 20)&&(grid[r+depth][c+spreadth].getIsObstacle())&&(!grid[r+depth-1][c+spreadth].getIsObstacle()))){
-                                if(!checkObstacleOTW(d,r,c,r+depth,c+spreadth)) {
-                                    res = Arrays.asList(x_offset + (c + spreadth) * size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size, x_offset + (c + spreadth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size);
-                                    flag.add(spreadth);
-                                    rightFlag.add(spreadth);
-                                    imageCoverage.add(res);
-                                    surface = new ObsSurface(r+depth,c + spreadth,Direction.DOWN);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-//                            if (leftFlag.isEmpty()||(spreadth>  Collections.max(leftFlag))) {
-                            if (((c-spreadth >= 0 )&& (r+depth < 20)&&(grid[r+depth][c-spreadth].getIsObstacle()) &&(!grid[r+depth-1][c-spreadth].getIsObstacle()))) {
-                                if(!checkObstacleOTW(d,r,c,r+depth,c-spreadth)) {
-                                    res = Arrays.asList(x_offset + (c - spreadth) * size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size, x_offset + (c - spreadth) * size + size, y_offset + (MapConstants.MAP_ROWS - (r + depth)) * size);
-                                    flag.add(spreadth);
-                                    leftFlag.add(spreadth);
-                                    imageCoverage.add(res);
-
-                                    surface = new ObsSurface(r+depth,c - spreadth,Direction.DOWN);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-                        }
-                    }
+                    r-=1;
+                    pos = Arrays.asList(r,c);
+                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE + 12 + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE - 3);
                     break;
                 case SOUTH:
-//                    c+=2;
-                    for (int depth = 0; depth < depthLimit; depth++){
-                        for (int spreadth = 0; spreadth <= depth; spreadth++) {
-//                            if (flag.contains(spreadth))
-//                                continue;
-//                            if (((r + spreadth < 20) && (c + depth < 15) && (grid[r + spreadth][c + depth].getIsObstacle()) && (!grid[r + spreadth][c + depth -1].getIsObstacle()) ) && (rightFlag.isEmpty()||(spreadth> depth + Collections.max(rightFlag)))) {
-//                            if (rightFlag.isEmpty()||(spreadth> Collections.max(rightFlag))){
-                            if (((r + spreadth < 20) && (c + depth < 15)  && (grid[r + spreadth][c + depth].getIsObstacle()) && (!grid[r + spreadth][c + depth -1].getIsObstacle()))) {
-                                if(!checkObstacleOTW(d,r,c,r+spreadth,c+depth)) {
-                                    res = Arrays.asList(x_offset + (c + depth) * size, y_offset + (MapConstants.MAP_ROWS - (r + spreadth)) * size, x_offset + (c + depth) * size, y_offset + (MapConstants.MAP_ROWS - (r + spreadth) - 1) * size);
-
-                                    flag.add(spreadth);
-                                    rightFlag.add(spreadth);
-                                    imageCoverage.add(res);
-
-                                    surface = new ObsSurface(r+spreadth,c + depth,Direction.LEFT);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-//                            if (((r - spreadth >= 0) && (c + depth < 15) && (grid[r - spreadth][c + depth].getIsObstacle()) && (!grid[r - spreadth][c + depth -1].getIsObstacle()) ) && (leftFlag.isEmpty()||(spreadth> depth + Collections.max(rightFlag)))) {
-//                            if (((r - spreadth >= 0) && (c + depth < 15) && (grid[r - spreadth][c + depth].getIsObstacle()) && (!grid[r - spreadth][c + depth -1].getIsObstacle()))) {
-//                                res = Arrays.asList(x_offset + (c + depth) * size, y_offset + (MapConstants.MAP_ROWS - ((r - spreadth))) * size, x_offset + (c + depth) * size, y_offset + (MapConstants.MAP_ROWS - (r - spreadth) - 1) * size);
-//                                flag.add(spreadth);
-//                                leftFlag.add(spreadth);
-//                                imageCoverage.add(res);
-//                            }
-//                            if (leftFlag.isEmpty()||(spreadth>  Collections.max(leftFlag))) {
-                            if (((r - spreadth >= 0) && (c + depth < 15) && (grid[r - spreadth][c + depth].getIsObstacle()) && (!grid[r - spreadth][c + depth -1].getIsObstacle()))) {
-                                if(!checkObstacleOTW(d,r,c,r-spreadth,c+depth)) {
-                                    res = Arrays.asList(x_offset + (c + depth) * size, y_offset + (MapConstants.MAP_ROWS - ((r - spreadth))) * size, x_offset + (c + depth) * size, y_offset + (MapConstants.MAP_ROWS - (r - spreadth) - 1) * size);
-                                    flag.add(spreadth);
-                                    leftFlag.add(spreadth);
-                                    imageCoverage.add(res);
-
-                                    surface = new ObsSurface(r-spreadth,c + depth,Direction.LEFT);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-                        }
-                    }
-
+                    c-=1;
+                    pos = Arrays.asList(r,c);
+                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE + 26 + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE + 12);
                     break;
                 case WEST:
-//                    r-=2;
-                    for (int depth = 0; depth < depthLimit; depth++){
-                        for (int spreadth = 0; spreadth <= depth; spreadth++){
-//                            if (flag.contains(spreadth))
-//                                continue;
-//                            if (rightFlag.isEmpty()||(spreadth> Collections.max(rightFlag))){
-                            if (((c+spreadth < 15 )&& (r-depth >= 0) &&(grid[r-depth][c+spreadth].getIsObstacle()) && (!grid[r-depth+1][c+spreadth].getIsObstacle()))){
-                                if(!checkObstacleOTW(d,r,c,r-depth,c+spreadth)) {
-                                    res = Arrays.asList(x_offset+(c+spreadth)*size,y_offset+(MapConstants.MAP_ROWS-(r-depth)-1)*size,x_offset+(c+spreadth)*size+size,y_offset+(MapConstants.MAP_ROWS-(r-depth)-1)*size);
-                                    imageCoverage.add(res);
-                                    rightFlag.add(spreadth);
-                                    flag.add(spreadth);
-
-                                    surface = new ObsSurface(r-depth,c + spreadth,Direction.UP);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-//                            if (leftFlag.isEmpty()||(spreadth> Collections.max(leftFlag))){
-                            if (((c-spreadth >= 0 )&& (r-depth >= 0)&&(grid[r-depth][c-spreadth].getIsObstacle()) && (!grid[r-depth+1][c-spreadth].getIsObstacle()))){
-                                if(!checkObstacleOTW(d,r,c,r-depth,c-spreadth)) {
-                                    res = Arrays.asList(x_offset+(c-spreadth)*size,y_offset+(MapConstants.MAP_ROWS-(r-depth)-1)*size,x_offset+(c-spreadth)*size+size,y_offset+(MapConstants.MAP_ROWS-(r-depth)-1)*size);
-                                    imageCoverage.add(res);
-                                    leftFlag.add(spreadth);
-                                    flag.add(spreadth);
-
-                                    surface = new ObsSurface(r-depth,c - spreadth,Direction.UP);
-                                    surfaceTaken.put(surface.toString(), surface);
-                                    surfaceCoverage.add(surface);
-                                }
-                            }
-                        }
-                    }
+                    r+=1;
+                    pos = Arrays.asList(r,c);
+                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE + 12 + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE + 23);
                     break;
             }
 
+            imagePos.add(pos);
+            cameraPos.add(cPos);
         }
-        else{
-            stepCount-=1;
+    }
+
+    /**
+     * Sets whether the map is used without a display. A headless map is never painted, so repaint() takes the images
+     * that painting would have taken instead.
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    @Override
+    public void repaint() {
+        if (headless) {
+            captureImage();
+        } else {
+            super.repaint();
         }
-        return res_flag;
     }
 
     /**
@@ -495,17 +1052,17 @@ public class Map extends JPanel {
      */
     public void paintComponent(Graphics g) {
         // Create a two-dimensional array of _DisplayCell objects for rendering.
-        _DisplayCell[][] _mapCells = new _DisplayCell[MapConstants.MAP_ROWS][MapConstants.MAP_COLS];
-        for (int mapRow = 0; mapRow < MapConstants.MAP_ROWS; mapRow++) {
-            for (int mapCol = 0; mapCol < MapConstants.MAP_COLS; mapCol++) {
+        _DisplayCell[][] _mapCells = new _DisplayCell[rows][cols];
+        for (int mapRow = 0; mapRow < rows; mapRow++) {
+            for (int mapCol = 0; mapCol < cols; mapCol++) {
                 _mapCells[mapRow][mapCol] = new _DisplayCell(mapCol * GraphicsConstants.CELL_SIZE, mapRow * GraphicsConstants.CELL_SIZE, GraphicsConstants.CELL_SIZE);
             }
         }
 
 
         // Paint the cells with the appropriate colors.
-        for (int mapRow = 0; mapRow < MapConstants.MAP_ROWS; mapRow++) {
-            for (int mapCol = 0; mapCol < MapConstants.MAP_COLS; mapCol++) {
+        for (int mapRow = 0; mapRow < rows; mapRow++) {
+            for (int mapCol = 0; mapCol < cols; mapCol++) {
                 Color cellColor;
 
                 if (inStartZone(mapRow, mapCol))
@@ -513,10 +1070,10 @@ public class Map extends JPanel {
                 else if (inGoalZone(mapRow, mapCol))
                     cellColor = GraphicsConstants.C_GOAL;
                 else {
-                    if (!grid[mapRow][mapCol].getIsExplored()) {
+                    if (!isExploredCell(mapRow, mapCol)) {
                         cellColor = GraphicsConstants.C_UNEXPLORED;
                     }
-                    else if (grid[mapRow][mapCol].getIsObstacle()) {
+                    else if (isObstacleCell(mapRow, mapCol)) {
                         cellColor = GraphicsConstants.C_OBSTACLE;
                     }
 //                    else if (grid[mapRow][mapCol].getIsVirtualWall()) {
@@ -536,9 +1093,7 @@ public class Map extends JPanel {
         int r = bot.getRobotPosRow();
         int c = bot.getRobotPosCol();
 
-        if(d != prev_d)
-            takeImage = true;
-        prev_d = d;
+        captureImage();
 
         // Paint the robot on-screen.
         g.setColor(GraphicsConstants.C_ROBOT);
@@ -561,35 +1116,6 @@ public class Map extends JPanel {
                 break;
         }
 
-        if(computeImageCoverage(g,d,r,c)) {
-            List<Integer> pos = new ArrayList<>();
-            List<Integer> cPos = new ArrayList<>();
-            switch (d) {
-                case NORTH:
-                    c+=1;
-                    pos = Arrays.asList(r,c);
-                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE  + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE + 15);
-                    break;
-                case EAST:
-                    r-=1;
-                    pos = Arrays.asList(r,c);
-                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE + 12 + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE - 3);
-                    break;
-                case SOUTH:
-                    c-=1;
-                    pos = Arrays.asList(r,c);
-                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE + 26 + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE + 12);
-                    break;
-                case WEST:
-                    r+=1;
-                    pos = Arrays.asList(r,c);
-                    cPos = Arrays.asList(c * GraphicsConstants.CELL_SIZE + 12 + GraphicsConstants.MAP_X_OFFSET, GraphicsConstants.MAP_H - r * GraphicsConstants.CELL_SIZE + 23);
-                    break;
-            }
-
-            imagePos.add(pos);
-            cameraPos.add(cPos);
-        }
         for (List<Integer> pos : imagePos){
             g.setColor(Color.magenta);
             g.fillRect(_mapCells[pos.get(0)][pos.get(1)].cellX + GraphicsConstants.MAP_X_OFFSET, _mapCells[pos.get(0)][pos.get(1)].cellY, _mapCells[pos.get(0)][pos.get(1)].cellSize, _mapCells[pos.get(0)][pos.get(1)].cellSize);
@@ -613,43 +1139,13 @@ public class Map extends JPanel {
 
     }
     public void paintSurface(List<ObsSurface>coverage,Graphics g, Color color){
-
-        List<Integer> res = new ArrayList<Integer>();
-
         Graphics2D g2 = (Graphics2D) g;
         g2.setColor(color);
         g2.setStroke(new BasicStroke(3));
-        int x_offset = GraphicsConstants.MAP_X_OFFSET;
-        int y_offset = GraphicsConstants.MAP_Y_OFFSET;
-        int size = GraphicsConstants.CELL_SIZE;
 
         for (ObsSurface surface : coverage){
-            switch(surface.getSurface()){
-                case UP:
-                {
-                    res = Arrays.asList(x_offset+ surface.getCol()*size,y_offset+(MapConstants.MAP_ROWS-surface.getRow()-1)*size,x_offset+ surface.getCol()*size+size,y_offset+(MapConstants.MAP_ROWS-surface.getRow()-1)*size);
-                    g2.drawLine(res.get(0),res.get(1),res.get(2),res.get(3));
-                    break;
-                }
-                case DOWN:
-                {
-                    res = Arrays.asList(x_offset + surface.getCol() * size, y_offset + (MapConstants.MAP_ROWS - surface.getRow()) * size, x_offset +  surface.getCol() * size + size, y_offset + (MapConstants.MAP_ROWS - surface.getRow()) * size);
-                    g2.drawLine(res.get(0),res.get(1),res.get(2),res.get(3));
-                    break;
-                }
-                case LEFT:
-                {
-                    res = Arrays.asList(x_offset + surface.getCol() * size, y_offset + (MapConstants.MAP_ROWS - (surface.getRow())) * size, x_offset + surface.getCol() * size, y_offset + (MapConstants.MAP_ROWS - surface.getRow() - 1) * size);
-                    g2.drawLine(res.get(0),res.get(1),res.get(2),res.get(3));
-                    break;
-                }
-                case RIGHT:
-                {
-                    res = Arrays.asList(x_offset + surface.getCol() * size + size, y_offset + (MapConstants.MAP_ROWS - surface.getRow()) * size, x_offset + surface.getCol() * size + size, y_offset + (MapConstants.MAP_ROWS - surface.getRow() - 1) * size);
-                    g2.drawLine(res.get(0),res.get(1),res.get(2),res.get(3));
-                    break;
-                }
-            }
+            List<Integer> res = getSurfaceLine(surface);
+            g2.drawLine(res.get(0),res.get(1),res.get(2),res.get(3));
         }
         surfaceTaken.clear();
     }
@@ -669,21 +1165,26 @@ public class Map extends JPanel {
      * Sets all cells in the grid to an unexplored state except for the START & GOAL zone.
      */
     public void clearAll() {
-        for (int row = 0; row < grid.length; row++) {
-            for (int col = 0; col < grid[0].length; col++) {
-                grid[row][col] = new Cell(row, col);
-
-                // Set the virtual walls of the arena
-                if (row == 0 || col == 0 || row == MapConstants.MAP_ROWS - 1 || col == MapConstants.MAP_COLS - 1) {
-                    grid[row][col].setVirtualWall(true);
-                }
-            }
-        }
+        version++;
+        Arrays.fill(explored, 0L);
+        Arrays.fill(obstacles, 0L);
+        Arrays.fill(virtualWalls, 0L);
+        Arrays.fill(wallCounts, 0);
+        Arrays.fill(logOdds, (short) 0);
+        setBorderWalls();
+        setAllDirty();
+        rebuildFrontier();
+        recount();
         surfaceCoverage.clear();
         imagePos.clear();
         cameraPos.clear();
-        notYetTakenList.clear();
+        notYetTakenList = new ArrayList<ObsSurface>();
+        notAccessibleSurface.clear();
         surfaceTaken.clear();
+        imageCoverage.clear();
+        takeImage = false;
+        stepCount = 2;
+        prev_d = NORTH;
     }
 
     public List<ObsSurface> getSurfaceCoverage(){
@@ -713,6 +1214,10 @@ public class Map extends JPanel {
         notAccessibleSurface.add(surfaces);
     }
 
+    public List<ObsSurface> getNotAccessibleSurfaces(){
+        return notAccessibleSurface;
+    }
+
     public ObsSurface nearestObsSurface(Point loc, HashMap<String, ObsSurface> notYetTaken) {
         double dist = 1000, tempDist;
         Point tempPos;
@@ -830,7 +1335,7 @@ public class Map extends JPanel {
 //            System.out.println(getCell(row, col).getIsExplored());
 //        }
 //        boolean OTW = checkObstacleOTW(bot.getRobotCurDir(),)
-        boolean res = checkValidCell(row, col) && !getCell(row, col).getIsVirtualWall() && !getCell(row, col).getIsObstacle() && getCell(row,col).getIsExplored();
+        boolean res = checkValidCell(row, col) && isVisitableCell(row, col);
 //        System.out.println("res is"+res);
         return res;
     }
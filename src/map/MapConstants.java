@@ -12,4 +12,10 @@ public class MapConstants {
     public static final int MAP_COLS = 15;      // total num of cols
     public static final int GOAL_ROW = 18;      // row no. of goal cell
     public static final int GOAL_COL = 13;      // col no. of goal cell
+    public static final int ROBOT_RADIUS = 1;   // num of cells the robot's footprint reaches out from its centre
+    public static final int REGION_SIZE = 5;    // side of the square regions the Map keeps counts for (cells)
+    public static final int LOG_ODDS_SCALE = 100;       // log-odds are stored as short in units of 1/LOG_ODDS_SCALE
+    public static final int LOG_ODDS_OCCUPIED = 100;    // a cell becomes an obstacle at or above this (p = 0.73)
+    public static final int LOG_ODDS_FREE = -100;       // ... and free at or below this
+    public static final int LOG_ODDS_MAX = 200;         // log-odds are clamped to +-LOG_ODDS_MAX (p = 0.88)
 }
@@ -4,17 +4,18 @@ import map.Map;
 import map.MapConstants;
 import robot.RobotConstants.DIRECTION;
 import robot.RobotConstants.MOVEMENT;
+import utils.Clock;
 import utils.CommMgr;
-import utils.MapDescriptor;
+import utils.MapDeltaEncoder;
 
 import java.awt.*;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 
 // @formatter:off
 /**
  * Represents the robot moving in the arena.
  *
- * The robot is represented by a 3 x 3 cell space as below:
+ * The robot is represented by a 3 x 3 cell space as below (by default, see setRadius()):
  *
  *          ^   ^   ^
  *         SR  SR  SR
@@ -42,6 +43,15 @@ public class Robot {
     private final Sensor LRRight;            // right LR
     private boolean touchedGoal;
     private final boolean realBot;
+    private int radius = MapConstants.ROBOT_RADIUS;     // num of cells the footprint reaches out from the center
+    private int goalRow = RobotConstants.GOAL_ROW;
+    private int goalCol = RobotConstants.GOAL_COL;
+    private Clock clock = Clock.SYSTEM;
+    private int moveCount = 0;              // num of cells moved, forwards or backwards
+    private int turnCount = 0;
+    private final MapDeltaEncoder mapUpdates = new MapDeltaEncoder(RobotConstants.FULL_MAP_INTERVAL);
+    private SensorFootprint footprint;      // see getSensorFootprint(), made for the size of the last map asked for
+    private final int[] sensorValues = new int[SensorFootprint.NUM_SENSORS];
 
     public Robot(int row, int col, boolean realBot) {
         posRow = row;
@@ -51,15 +61,15 @@ public class Robot {
 
         this.realBot = realBot;
 
-        SRFrontLeft = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, "SRFL");
-        SRFrontCenter = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, "SRFC");
-        SRFrontRight = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol + 1, this.robotDir, "SRFR");
+        SRFrontLeft = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, RobotConstants.SENSOR_FRONT_CONFIDENCE);
+        SRFrontCenter = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, RobotConstants.SENSOR_FRONT_CONFIDENCE);
+        SRFrontRight = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol + 1, this.robotDir, RobotConstants.SENSOR_FRONT_CONFIDENCE);
 //        SRLeft = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, findNewDirection(MOVEMENT.LEFT), "SRL");
 //        SRRight = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol + 1, findNewDirection(MOVEMENT.RIGHT), "SRR");
 //        LRLeft = new Sensor(RobotConstants.SENSOR_LONG_RANGE_L, RobotConstants.SENSOR_LONG_RANGE_H, this.posRow, this.posCol - 1, findNewDirection(MOVEMENT.LEFT), "LRL");
-        SRLeftFront = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, "SRLF");
-        SRLeftBack = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow - 1, this.posCol - 1, this.robotDir, "SRLB");
-        LRRight = new Sensor(RobotConstants.SENSOR_LONG_RANGE_L, RobotConstants.SENSOR_LONG_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, "LRR");
+        SRLeftFront = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, RobotConstants.SENSOR_SIDE_CONFIDENCE);
+        SRLeftBack = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow - 1, this.posCol - 1, this.robotDir, RobotConstants.SENSOR_SIDE_CONFIDENCE);
+        LRRight = new Sensor(RobotConstants.SENSOR_LONG_RANGE_L, RobotConstants.SENSOR_LONG_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, RobotConstants.SENSOR_LONG_CONFIDENCE);
     }
 
     public Robot(int row, int col, boolean realBot, DIRECTION dir) {
@@ -70,15 +80,15 @@ public class Robot {
 
         this.realBot = realBot;
 
-        SRFrontLeft = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, "SRFL");
-        SRFrontCenter = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, "SRFC");
-        SRFrontRight = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol + 1, this.robotDir, "SRFR");
+        SRFrontLeft = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, RobotConstants.SENSOR_FRONT_CONFIDENCE);
+        SRFrontCenter = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, RobotConstants.SENSOR_FRONT_CONFIDENCE);
+        SRFrontRight = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol + 1, this.robotDir, RobotConstants.SENSOR_FRONT_CONFIDENCE);
 //        SRLeft = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, findNewDirection(MOVEMENT.LEFT), "SRL");
 //        SRRight = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol + 1, findNewDirection(MOVEMENT.RIGHT), "SRR");
 //        LRLeft = new Sensor(RobotConstants.SENSOR_LONG_RANGE_L, RobotConstants.SENSOR_LONG_RANGE_H, this.posRow, this.posCol - 1, findNewDirection(MOVEMENT.LEFT), "LRL");
-        SRLeftFront = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, "SRLF");
-        SRLeftBack = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow - 1, this.posCol - 1, this.robotDir, "SRLB");
-        LRRight = new Sensor(RobotConstants.SENSOR_LONG_RANGE_L, RobotConstants.SENSOR_LONG_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, "LRR");
+        SRLeftFront = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow + 1, this.posCol - 1, this.robotDir, RobotConstants.SENSOR_SIDE_CONFIDENCE);
+        SRLeftBack = new Sensor(RobotConstants.SENSOR_SHORT_RANGE_L, RobotConstants.SENSOR_SHORT_RANGE_H, this.posRow - 1, this.posCol - 1, this.robotDir, RobotConstants.SENSOR_SIDE_CONFIDENCE);
+        LRRight = new Sensor(RobotConstants.SENSOR_LONG_RANGE_L, RobotConstants.SENSOR_LONG_RANGE_H, this.posRow + 1, this.posCol, this.robotDir, RobotConstants.SENSOR_LONG_CONFIDENCE);
     }
 
     public void setRobotPos(int row, int col) {
@@ -102,6 +112,25 @@ public class Robot {
         this.speed = speed;
     }
 
+    /**
+     * Sets the clock that simulated movements wait on. Use a VirtualClock to run without real delays.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getTurnCount() {
+        return turnCount;
+    }
+
     public DIRECTION getRobotCurDir() {
         return robotDir;
     }
@@ -110,8 +139,40 @@ public class Robot {
         return realBot;
     }
 
+    /**
+     * Sets the num of cells the robot's footprint reaches out from its center. The sensors are mounted on the edge
+     * of the footprint, so the three front sensors only cover its whole front edge with the default radius of 1.
+     * A wider robot can run the fastest path on a known map, but ExplorationAlgo rejects it.
+     */
+    public void setRadius(int radius) {
+        this.radius = radius;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns the robot's SensorFootprint for an arena of the given size, made on first use and again whenever the
+     * radius or the arena size changes. Shared with the planners so that only one set of ray tables is kept.
+     */
+    public SensorFootprint getSensorFootprint(int rows, int cols) {
+        if (footprint == null || !footprint.fits(radius, rows, cols)) {
+            footprint = new SensorFootprint(radius, rows, cols);
+        }
+        return footprint;
+    }
+
+    /**
+     * Sets the cell that counts as touching the goal.
+     */
+    public void setGoal(int row, int col) {
+        this.goalRow = row;
+        this.goalCol = col;
+    }
+
     private void updateTouchedGoal() {
-        if (this.getRobotPosRow() == MapConstants.GOAL_ROW && this.getRobotPosCol() == MapConstants.GOAL_COL)
+        if (this.getRobotPosRow() == goalRow && this.getRobotPosCol() == goalCol)
             this.touchedGoal = true;
     }
 
@@ -127,14 +188,27 @@ public class Robot {
         if (!realBot) {
             // Emulate real movement by pausing execution.
             try {
-                TimeUnit.MILLISECONDS.sleep(speed);
+                clock.sleep(speed);
             } catch (InterruptedException e) {
                 System.out.println("Something went wrong in Robot.move()!");
             }
         }
 
+        applyMovement(m);
+
+        if (realBot) sendMovement(m, sendMoveToAndroid);
+        else System.out.println("Move: " + MOVEMENT.print(m));
+
+        updateTouchedGoal();
+    }
+
+    /**
+     * Updates the position, direction and counters of the robot for one movement.
+     */
+    private void applyMovement(MOVEMENT m) {
         switch (m) {
             case FORWARD:
+                moveCount++;
                 switch (robotDir) {
                     case NORTH:
                         posRow++;
@@ -151,6 +225,7 @@ public class Robot {
                 }
                 break;
             case BACKWARD:
+                moveCount++;
                 switch (robotDir) {
                     case NORTH:
                         posRow--;
@@ -168,6 +243,7 @@ public class Robot {
                 break;
             case RIGHT:
             case LEFT:
+                turnCount++;
                 robotDir = findNewDirection(m);
                 break;
             case CALIBRATE:
@@ -176,11 +252,6 @@ public class Robot {
                 System.out.println("Error in Robot.move()!");
                 break;
         }
-
-        if (realBot) sendMovement(m, sendMoveToAndroid);
-        else System.out.println("Move: " + MOVEMENT.print(m));
-
-        updateTouchedGoal();
     }
 
     /**
@@ -203,6 +274,7 @@ public class Robot {
             } else if (count < 10) {
                 comm.sendMsg(Integer.toString(count), CommMgr.INSTRUCTIONS);
             }
+            moveCount += count;
 
             switch (robotDir) {
                 case NORTH:
@@ -212,10 +284,10 @@ public class Robot {
                     posCol += count;
                     break;
                 case SOUTH:
-                    posRow += count;
+                    posRow -= count;
                     break;
                 case WEST:
-                    posCol += count;
+                    posCol -= count;
                     break;
             }
 
@@ -223,6 +295,78 @@ public class Robot {
         }
     }
 
+    /**
+     * Pipelined execution of a whole list of movements. The real robot gets all of them in one INSTR message (see
+     * compileInstructions()), so it never waits for the next command between motions. The robot's position is then
+     * followed through the movements at one per `speed` ms, repainting map after each (if not null) and sending
+     * BOT_POS to Android at most once per BOT_POS_INTERVAL ms, and always for the final position.
+     */
+    public void moveStream(List<MOVEMENT> movements, Map map) {
+        CommMgr comm = CommMgr.getCommMgr();
+        if (realBot) comm.sendMsg(compileInstructions(movements), CommMgr.INSTRUCTIONS);
+
+        long lastBotPos = clock.currentTimeMillis();
+        boolean posSent = true;
+        for (MOVEMENT m : movements) {
+            try {
+                clock.sleep(speed);
+            } catch (InterruptedException e) {
+                System.out.println("Something went wrong in Robot.moveStream()!");
+            }
+
+            applyMovement(m);
+            updateTouchedGoal();
+            posSent = false;
+            if (map != null) map.repaint();
+
+            if (realBot && clock.currentTimeMillis() - lastBotPos >= RobotConstants.BOT_POS_INTERVAL) {
+                sendBotPos(comm);
+                lastBotPos = clock.currentTimeMillis();
+                posSent = true;
+            }
+        }
+        if (realBot && !posSent) sendBotPos(comm);
+    }
+
+    /**
+     * Compiles movements into one instruction stream for the robot: each run of FORWARD movements becomes a single
+     * "W%03d" (split every MAX_FORWARD_RUN cells), and every other movement is written as MOVEMENT.print().
+     */
+    public static String compileInstructions(List<MOVEMENT> movements) {
+        StringBuilder sb = new StringBuilder();
+        int fCount = 0;
+        for (MOVEMENT m : movements) {
+            if (m == MOVEMENT.FORWARD) {
+                if (++fCount == RobotConstants.MAX_FORWARD_RUN) {
+                    sb.append(String.format("W%03d", fCount));
+                    fCount = 0;
+                }
+                continue;
+            }
+            if (fCount > 0) {
+                sb.append(String.format("W%03d", fCount));
+                fCount = 0;
+            }
+            sb.append(MOVEMENT.print(m));
+        }
+        if (fCount > 0) sb.append(String.format("W%03d", fCount));
+        return sb.toString();
+    }
+
+    /**
+     * Asks the real robot's camera to take an image from the current pose. The simulated robot's images are taken by
+     * the map when it is repainted (see Map.setArriveAtImagePos()).
+     */
+    public void takeImage() {
+        if (realBot) {
+            CommMgr.getCommMgr().sendMsg(this.getRobotPosRow() + "," + this.getRobotPosCol() + "," + DIRECTION.print(this.getRobotCurDir()), CommMgr.TAKE_IMAGE);
+        }
+    }
+
+    private void sendBotPos(CommMgr comm) {
+        comm.sendMsg(this.getRobotPosRow() + "," + this.getRobotPosCol() + "," + DIRECTION.print(this.getRobotCurDir()), CommMgr.BOT_POS);
+    }
+
     /**
      * Uses the CommMgr to send the next movement to the robot.
      */
@@ -240,36 +384,36 @@ public class Robot {
     public void setSensors() {
         switch (robotDir) {
             case NORTH:
-                SRFrontLeft.setSensor(this.posRow + 1, this.posCol - 1, this.robotDir);
-                SRFrontCenter.setSensor(this.posRow + 1, this.posCol, this.robotDir);
-                SRFrontRight.setSensor(this.posRow + 1, this.posCol + 1, this.robotDir);
-                SRLeftFront.setSensor(this.posRow + 1, this.posCol - 1, findNewDirection(MOVEMENT.LEFT));
-                SRLeftBack.setSensor(this.posRow - 1, this.posCol - 1, findNewDirection(MOVEMENT.LEFT));
-                LRRight.setSensor(this.posRow + 1, this.posCol, findNewDirection(MOVEMENT.RIGHT));
+                SRFrontLeft.setSensor(this.posRow + radius, this.posCol - radius, this.robotDir);
+                SRFrontCenter.setSensor(this.posRow + radius, this.posCol, this.robotDir);
+                SRFrontRight.setSensor(this.posRow + radius, this.posCol + radius, this.robotDir);
+                SRLeftFront.setSensor(this.posRow + radius, this.posCol - radius, findNewDirection(MOVEMENT.LEFT));
+                SRLeftBack.setSensor(this.posRow - radius, this.posCol - radius, findNewDirection(MOVEMENT.LEFT));
+                LRRight.setSensor(this.posRow + radius, this.posCol, findNewDirection(MOVEMENT.RIGHT));
                 break;
             case EAST:
-                SRFrontLeft.setSensor(this.posRow + 1, this.posCol + 1, this.robotDir);
-                SRFrontCenter.setSensor(this.posRow, this.posCol + 1, this.robotDir);
-                SRFrontRight.setSensor(this.posRow - 1, this.posCol + 1, this.robotDir);
-                SRLeftFront.setSensor(this.posRow + 1, this.posCol + 1, findNewDirection(MOVEMENT.LEFT));
-                SRLeftBack.setSensor(this.posRow + 1, this.posCol-1, findNewDirection(MOVEMENT.LEFT));
-                LRRight.setSensor(this.posRow, this.posCol + 1, findNewDirection(MOVEMENT.RIGHT));
+                SRFrontLeft.setSensor(this.posRow + radius, this.posCol + radius, this.robotDir);
+                SRFrontCenter.setSensor(this.posRow, this.posCol + radius, this.robotDir);
+                SRFrontRight.setSensor(this.posRow - radius, this.posCol + radius, this.robotDir);
+                SRLeftFront.setSensor(this.posRow + radius, this.posCol + radius, findNewDirection(MOVEMENT.LEFT));
+                SRLeftBack.setSensor(this.posRow + radius, this.posCol - radius, findNewDirection(MOVEMENT.LEFT));
+                LRRight.setSensor(this.posRow, this.posCol + radius, findNewDirection(MOVEMENT.RIGHT));
                 break;
             case SOUTH:
-                SRFrontLeft.setSensor(this.posRow - 1, this.posCol + 1, this.robotDir);
-                SRFrontCenter.setSensor(this.posRow - 1, this.posCol, this.robotDir);
-                SRFrontRight.setSensor(this.posRow - 1, this.posCol - 1, this.robotDir);
-                SRLeftFront.setSensor(this.posRow - 1, this.posCol + 1, findNewDirection(MOVEMENT.LEFT));
-                SRLeftBack.setSensor(this.posRow + 1, this.posCol + 1, findNewDirection(MOVEMENT.LEFT));
-                LRRight.setSensor(this.posRow - 1, this.posCol, findNewDirection(MOVEMENT.RIGHT));
+                SRFrontLeft.setSensor(this.posRow - radius, this.posCol + radius, this.robotDir);
+                SRFrontCenter.setSensor(this.posRow - radius, this.posCol, this.robotDir);
+                SRFrontRight.setSensor(this.posRow - radius, this.posCol - radius, this.robotDir);
+                SRLeftFront.setSensor(this.posRow - radius, this.posCol + radius, findNewDirection(MOVEMENT.LEFT));
+                SRLeftBack.setSensor(this.posRow + radius, this.posCol + radius, findNewDirection(MOVEMENT.LEFT));
+                LRRight.setSensor(this.posRow - radius, this.posCol, findNewDirection(MOVEMENT.RIGHT));
                 break;
             case WEST:
-                SRFrontLeft.setSensor(this.posRow - 1, this.posCol - 1, this.robotDir);
-                SRFrontCenter.setSensor(this.posRow, this.posCol - 1, this.robotDir);
-                SRFrontRight.setSensor(this.posRow + 1, this.posCol - 1, this.robotDir);
-                SRLeftFront.setSensor(this.posRow - 1, this.posCol - 1, findNewDirection(MOVEMENT.LEFT));
-                SRLeftBack.setSensor(this.posRow - 1, this.posCol + 1, findNewDirection(MOVEMENT.LEFT));
-                LRRight.setSensor(this.posRow, this.posCol - 1, findNewDirection(MOVEMENT.RIGHT));
+                SRFrontLeft.setSensor(this.posRow - radius, this.posCol - radius, this.robotDir);
+                SRFrontCenter.setSensor(this.posRow, this.posCol - radius, this.robotDir);
+                SRFrontRight.setSensor(this.posRow + radius, this.posCol - radius, this.robotDir);
+                SRLeftFront.setSensor(this.posRow - radius, this.posCol - radius, findNewDirection(MOVEMENT.LEFT));
+                SRLeftBack.setSensor(this.posRow - radius, this.posCol + radius, findNewDirection(MOVEMENT.LEFT));
+                LRRight.setSensor(this.posRow, this.posCol - radius, findNewDirection(MOVEMENT.RIGHT));
                 break;
         }
 
@@ -287,23 +431,21 @@ public class Robot {
     }
 
     /**
-     * Calls the .sense() method of all the attached sensors and stores the received values in an integer array.
+     * Senses from the robot's current pose and stores the received values in an integer array. The simulated robot
+     * looks its rays up in a SensorFootprint; the real robot reads them from SENSOR_DATA.
      *
-     * @return [SRFrontLeft, SRFrontCenter, SRFrontRight, SRLeft, SRRight, LRLeft]
+     * @return [SRFrontLeft, SRFrontCenter, SRFrontRight, SRLeftFront, SRLeftBack, LRRight], an array owned by the
+     * robot and overwritten by the next call
      */
     public int[] sense(Map explorationMap, Map realMap) {
-        int[] result = new int[6];
+        int[] result = sensorValues;
 
         if (!realBot) {
-            result[0] = SRFrontLeft.sense(explorationMap, realMap);
-            result[1] = SRFrontCenter.sense(explorationMap, realMap);
-            result[2] = SRFrontRight.sense(explorationMap, realMap);
-            result[3] = SRLeftFront.sense(explorationMap, realMap);
-            result[4] = SRLeftBack.sense(explorationMap, realMap);
-            result[5] = LRRight.sense(explorationMap, realMap);
+            getSensorFootprint(explorationMap.getRows(), explorationMap.getCols())
+                    .sense(explorationMap, realMap, posRow, posCol, robotDir, result);
         } else {
             CommMgr comm = CommMgr.getCommMgr();
-            String msg = comm.recvMsg();
+            String msg = comm.recvMsg(CommMgr.SENSOR_DATA);
             String[] msgArr = msg.split(";");
 
             if (msgArr[0].equals(CommMgr.SENSOR_DATA)) {
@@ -322,8 +464,7 @@ public class Robot {
             SRLeftBack.senseReal(explorationMap, result[4]);
             LRRight.senseReal(explorationMap, result[5]);
 
-            String[] mapStrings = MapDescriptor.generateMapDescriptor(explorationMap);
-            comm.sendMsg(mapStrings[0] + " " + mapStrings[1], CommMgr.MAP_STRINGS);
+            mapUpdates.sendUpdate(explorationMap, comm);
         }
 
         return result;
@@ -14,23 +14,36 @@ public class RobotConstants {
     public static final int MOVE_COST = 10;                         // cost of FORWARD, BACKWARD movement
     public static final int TURN_COST = 20;                         // cost of RIGHT, LEFT movement
     public static final int SPEED = 100;                            // delay between movements (ms)
+    public static final int BOT_POS_INTERVAL = 250;                 // min time between streamed BOT_POS updates (ms)
+    public static final int MAX_FORWARD_RUN = 999;                  // max cells in one W instruction
+    public static final int FULL_MAP_INTERVAL = 20;                 // max MAP_DELTA updates between two full MAP snapshots
     public static final DIRECTION START_DIR = DIRECTION.NORTH;      // start direction
     public static final int SENSOR_SHORT_RANGE_L = 1;               // range of short range sensor (cells)
     public static final int SENSOR_SHORT_RANGE_H = 2;               // range of short range sensor (cells)
     public static final int SENSOR_LONG_RANGE_L = 1;                // range of long range sensor (cells)
     public static final int SENSOR_LONG_RANGE_H = 4;                // range of long range sensor (cells)
 
+    // Log-odds evidence of one real reading about a cell, in 1/MapConstants.LOG_ODDS_SCALE, by distance from the
+    // sensor (index 0 = 1 cell away), added for a hit and subtracted for a miss. All are at least LOG_ODDS_OCCUPIED,
+    // so one hit makes an unknown cell an obstacle, and two to three readings flip a cell that has been seen the other
+    // way many times (see MapConstants.LOG_ODDS_MAX).
+    public static final int[] SENSOR_FRONT_CONFIDENCE = {170, 130};
+    public static final int[] SENSOR_SIDE_CONFIDENCE = {150, 110};
+    public static final int[] SENSOR_LONG_CONFIDENCE = {150, 120, 110, 100};
+
     public static final int INFINITE_COST = 9999;
 
     public enum DIRECTION {
         NORTH, EAST, SOUTH, WEST;
 
+        private static final DIRECTION[] VALUES = values();     // values() copies the array on every call
+
         public static DIRECTION getNext(DIRECTION curDirection) {
-            return values()[(curDirection.ordinal() + 1) % values().length];
+            return VALUES[(curDirection.ordinal() + 1) % VALUES.length];
         }
 
         public static DIRECTION getPrevious(DIRECTION curDirection) {
-            return values()[(curDirection.ordinal() + values().length - 1) % values().length];
+            return VALUES[(curDirection.ordinal() + VALUES.length - 1) % VALUES.length];
         }
 
         public static char print(DIRECTION d) {
@@ -15,15 +15,15 @@ public class Sensor {
     private int sensorPosRow;
     private int sensorPosCol;
     private DIRECTION sensorDir;
-    private final String id;
+    private final int[] confidence;     // log-odds evidence of a reading by distance, see RobotConstants
 
-    public Sensor(int lowerRange, int upperRange, int row, int col, DIRECTION dir, String id) {
+    public Sensor(int lowerRange, int upperRange, int row, int col, DIRECTION dir, int[] confidence) {
         this.lowerRange = lowerRange;
         this.upperRange = upperRange;
         this.sensorPosRow = row;
         this.sensorPosCol = col;
         this.sensorDir = dir;
-        this.id = id;
+        this.confidence = confidence;
     }
 
     public void setSensor(int row, int col, DIRECTION dir) {
@@ -61,7 +61,7 @@ public class Sensor {
                 int col = this.sensorPosCol + (colInc * i);
 
                 if (!exploredMap.checkValidCoordinates(row, col)) return i;
-                if (realMap.getCell(row, col).getIsObstacle()) return i;
+                if (realMap.isObstacleCell(row, col)) return i;
             }
         }
 
@@ -72,9 +72,9 @@ public class Sensor {
 
             if (!exploredMap.checkValidCoordinates(row, col)) return i;
 
-            exploredMap.getCell(row, col).setIsExplored(true);
+            exploredMap.setExploredCell(row, col, true);
 
-            if (realMap.getCell(row, col).getIsObstacle()) {
+            if (realMap.isObstacleCell(row, col)) {
                 exploredMap.setObstacleCell(row, col, true);
                 return i;
             }
@@ -105,7 +105,9 @@ public class Sensor {
     }
 
     /**
-     * Sets the correct cells to explored and/or obstacle according to the actual sensor value.
+     * Sets the correct cells to explored according to the actual sensor value and fuses the reading into their
+     * obstacle log-odds (see Map.fuseOccupancy()): a hit for the cell at sensorVal, a miss for the cells before it.
+     * A cell that is still an obstacle after a miss blocks the rest of the ray.
      */
     private void processSensorVal(Map exploredMap, int sensorVal, int rowInc, int colInc) {
         if (sensorVal == 0) return;  // return value for LR sensor if obstacle before lowerRange
@@ -116,7 +118,7 @@ public class Sensor {
             int col = this.sensorPosCol + (colInc * i);
 
             if (!exploredMap.checkValidCoordinates(row, col)) return;
-            if (exploredMap.getCell(row, col).getIsObstacle()) return;
+            if (exploredMap.isObstacleCell(row, col)) return;
         }
 
         // Update map according to sensor's value.
@@ -126,21 +128,13 @@ public class Sensor {
 
             if (!exploredMap.checkValidCoordinates(row, col)) continue;
 
-            exploredMap.getCell(row, col).setIsExplored(true);
+            exploredMap.setExploredCell(row, col, true);
 
             if (sensorVal == i) {
-                exploredMap.setObstacleCell(row, col, true);
+                exploredMap.fuseOccupancy(row, col, confidence[i - 1]);
                 break;
             }
-
-            // Override previous obstacle value if front sensors detect no obstacle.
-            if (exploredMap.getCell(row, col).getIsObstacle()) {
-                if (id.equals("SRFL") || id.equals("SRFC") || id.equals("SRFR")) {
-                    exploredMap.setObstacleCell(row, col, false);
-                } else {
-                    break;
-                }
-            }
+            if (exploredMap.fuseOccupancy(row, col, -confidence[i - 1])) break;
         }
     }
 }
@@ -0,0 +1,151 @@
+package robot;
+
+import map.Map;
+import robot.RobotConstants.DIRECTION;
+
+// @formatter:off
+/**
+ * The cells the robot's six sensors look at from every pose in an arena of a given size. Follows the layout of
+ * Robot.setSensors(): for a robot facing NORTH with radius R,
+ *
+ * SRFL: at [+R, -R] looking NORTH      SRLF: at [+R, -R] looking WEST
+ * SRFC: at [+R,  0] looking NORTH      SRLB: at [-R, -R] looking WEST
+ * SRFR: at [+R, +R] looking NORTH      LRR:  at [+R,  0] looking EAST
+ *
+ * and turned with the robot for the other headings. Sensors are numbered in the order of Robot.sense()'s result.
+ *
+ * The rays of all poses are worked out once, as cell indices (row * cols + col) from the sensor outwards, cut off at
+ * the edge of the arena. Every pose has the same number of slots (the sum of the sensors' upper ranges), so sensing
+ * from a pose, real or hypothetical, is a loop over a fixed slice of one int array.
+ */
+// @formatter:on
+
+public class SensorFootprint {
+    public static final int NUM_SENSORS = 6;
+
+    // Per sensor, in the robot's frame: position forward & to the right (in multiples of the radius), ray direction
+    // (0 = forward, -1 = left, 1 = right) and whether it is a long range sensor.
+    private static final int[] POS_FORWARD = {1, 1, 1, 1, -1, 1};
+    private static final int[] POS_RIGHT = {-1, 0, 1, -1, -1, 0};
+    private static final int[] LOOK = {0, 0, 0, -1, -1, 1};
+    private static final boolean[] LONG_RANGE = {false, false, false, false, false, true};
+
+    private final int radius;
+    private final int rows;
+    private final int cols;
+    private final int[] lowerRange = new int[NUM_SENSORS];
+    private final int[] upperRange = new int[NUM_SENSORS];
+    private final int[] slot = new int[NUM_SENSORS + 1];    // sensor --> start of its ray within a pose's cells
+    private final int[] rayCells;           // pose --> the cells of its rays, slot[NUM_SENSORS] ints from pose * that
+    private final byte[] rayLength;         // pose * NUM_SENSORS + sensor --> num of the ray's cells in the arena
+
+    public SensorFootprint(int radius, int rows, int cols) {
+        this.radius = radius;
+        this.rows = rows;
+        this.cols = cols;
+
+        for (int s = 0; s < NUM_SENSORS; s++) {
+            lowerRange[s] = LONG_RANGE[s] ? RobotConstants.SENSOR_LONG_RANGE_L : RobotConstants.SENSOR_SHORT_RANGE_L;
+            upperRange[s] = LONG_RANGE[s] ? RobotConstants.SENSOR_LONG_RANGE_H : RobotConstants.SENSOR_SHORT_RANGE_H;
+            slot[s + 1] = slot[s] + upperRange[s];
+        }
+
+        int numPoses = rows * cols * DIRECTION.values().length;
+        rayCells = new int[numPoses * slot[NUM_SENSORS]];
+        rayLength = new byte[numPoses * NUM_SENSORS];
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                for (DIRECTION d : DIRECTION.values()) {
+                    int pose = pose(row, col, d);
+                    int fwdRow = rowStep(d);
+                    int fwdCol = colStep(d);
+                    int rightRow = rowStep(DIRECTION.getNext(d));
+                    int rightCol = colStep(DIRECTION.getNext(d));
+
+                    for (int s = 0; s < NUM_SENSORS; s++) {
+                        int sensorRow = row + (POS_FORWARD[s] * fwdRow + POS_RIGHT[s] * rightRow) * radius;
+                        int sensorCol = col + (POS_FORWARD[s] * fwdCol + POS_RIGHT[s] * rightCol) * radius;
+                        int lookRow = LOOK[s] == 0 ? fwdRow : LOOK[s] * rightRow;
+                        int lookCol = LOOK[s] == 0 ? fwdCol : LOOK[s] * rightCol;
+
+                        int length = 0;
+                        for (int k = 1; k <= upperRange[s]; k++) {
+                            int r = sensorRow + lookRow * k;
+                            int c = sensorCol + lookCol * k;
+                            if (r < 0 || c < 0 || r >= rows || c >= cols) break;
+                            rayCells[pose * slot[NUM_SENSORS] + slot[s] + length++] = r * cols + c;
+                        }
+                        rayLength[pose * NUM_SENSORS + s] = (byte) length;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int rowStep(DIRECTION d) {
+        return d == DIRECTION.NORTH ? 1 : d == DIRECTION.SOUTH ? -1 : 0;
+    }
+
+    private static int colStep(DIRECTION d) {
+        return d == DIRECTION.EAST ? 1 : d == DIRECTION.WEST ? -1 : 0;
+    }
+
+    /**
+     * Returns true if the tables were made for this robot radius and arena size.
+     */
+    public boolean fits(int radius, int rows, int cols) {
+        return this.radius == radius && this.rows == rows && this.cols == cols;
+    }
+
+    private int pose(int row, int col, DIRECTION d) {
+        return (row * cols + col) * 4 + d.ordinal();
+    }
+
+    /**
+     * Senses from the pose [row, col, d] the same way Sensor.sense() does: writes the distance to the obstacle or
+     * arena edge each sensor detects in realMap, or -1, into result and marks the cells up to it in exploredMap.
+     */
+    public void sense(Map exploredMap, Map realMap, int row, int col, DIRECTION d, int[] result) {
+        int pose = pose(row, col, d);
+        int base = pose * slot[NUM_SENSORS];
+        for (int s = 0; s < NUM_SENSORS; s++) {
+            int length = rayLength[pose * NUM_SENSORS + s];
+            int val = length < upperRange[s] ? length + 1 : -1;
+            for (int k = 0; k < length; k++) {
+                int cell = rayCells[base + slot[s] + k];
+                boolean inRange = k + 1 >= lowerRange[s];
+                if (inRange) exploredMap.setExploredCell(cell);
+                if (realMap.isObstacleCell(cell)) {
+                    if (inRange) exploredMap.setObstacleCell(cell);
+                    val = k + 1;
+                    break;
+                }
+            }
+            result[s] = val;
+        }
+    }
+
+    /**
+     * Returns the number of unexplored cells of map the sensors would look at from the pose [row, col, d]. Each ray
+     * stops at the edge of the map and at the first cell known to be an obstacle; unexplored cells are assumed to be
+     * seen through.
+     */
+    public int countUnexplored(Map map, int row, int col, DIRECTION d) {
+        int count = 0;
+        int pose = pose(row, col, d);
+        int base = pose * slot[NUM_SENSORS];
+        for (int s = 0; s < NUM_SENSORS; s++) {
+            int length = rayLength[pose * NUM_SENSORS + s];
+            for (int k = 0; k < length; k++) {
+                int cell = rayCells[base + slot[s] + k];
+                if (!map.isExploredCell(cell)) {
+                    if (k + 1 >= lowerRange[s]) count++;
+                } else if (map.isObstacleCell(cell)) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,303 @@
+package simulator;
+
+import algorithms.ExplorationAlgo;
+import algorithms.FastestPathAlgo;
+import map.Map;
+import map.ObsSurface;
+import robot.Robot;
+import robot.RobotConstants;
+import utils.MapArchive;
+import utils.MapGenerator;
+import utils.VirtualClock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static utils.MapDescriptor.loadMapFromDisk;
+
+// @formatter:off
+/**
+ * Runs many independent explorations in parallel on a ForkJoinPool and sums up the results.
+ *
+ * Every Scenario gets its own robot, VirtualClock and pair of headless maps, so runs share no state and can be spread
+ * over all cores. The list of scenarios is split in halves until one scenario is left per task; the outcomes come
+ * back in the order of the scenarios.
+ */
+// @formatter:on
+
+public class ExplorationEvaluator {
+    private final ForkJoinPool pool;
+
+    public ExplorationEvaluator(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Runs every scenario and returns their outcomes in the same order.
+     */
+    public List<Outcome> evaluate(List<Scenario> scenarios) {
+        if (scenarios.isEmpty()) return new ArrayList<>();
+        return pool.invoke(new EvaluateTask(scenarios, 0, scenarios.size()));
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Explores the scenario's map from START, then runs the fastest path from START to GOAL on the explored map.
+     */
+    public static Outcome run(Scenario scenario) {
+        VirtualClock clock = new VirtualClock();
+        Robot bot = new Robot(RobotConstants.START_ROW, RobotConstants.START_COL, false);
+        bot.setClock(clock);
+        if (scenario.speed >= 0) bot.setSpeed(scenario.speed);
+
+        Map realMap = scenario.newMap(bot);
+        Map exploredMap = scenario.newMap(bot);
+        exploredMap.setHeadless(true);
+        scenario.load(realMap, exploredMap);
+        bot.setRobotPos(exploredMap.getStartRow(), exploredMap.getStartCol());
+
+        Outcome outcome = new Outcome(scenario, exploredMap.getNumCells());
+        try {
+            int coverageLimit = (int) (scenario.coveragePercent * exploredMap.getNumCells() / 100.0);
+            ExplorationAlgo exploration = new ExplorationAlgo(exploredMap, realMap, bot, coverageLimit, scenario.timeLimit);
+            if (scenario.strategy != null) exploration.setStrategy(scenario.strategy);
+            exploration.runExploration();
+            outcome.record(exploredMap, bot, clock);
+
+            bot.setRobotPos(exploredMap.getStartRow(), exploredMap.getStartCol());
+            long fpStart = clock.currentTimeMillis();
+            String path = new FastestPathAlgo(exploredMap, bot).runFastestPath(exploredMap.getGoalRow(), exploredMap.getGoalCol());
+            outcome.fastestPathMillis = clock.currentTimeMillis() - fpStart;
+            if (path == null) outcome.error = "no fastest path";
+        } catch (RuntimeException e) {
+            outcome.record(exploredMap, bot, clock);
+            outcome.error = e.toString();
+        }
+        return outcome;
+    }
+
+    /**
+     * Returns a table of the outcomes followed by the mean, min and max over the runs that did not fail.
+     */
+    public static String summarise(List<Outcome> outcomes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-22s %9s %6s %6s %9s %9s %8s  %s%n", "map", "coverage", "moves", "turns", "surfaces", "explore", "fastest", "status"));
+        for (Outcome o : outcomes) {
+            sb.append(o).append(System.lineSeparator());
+        }
+
+        List<Outcome> ok = new ArrayList<>();
+        for (Outcome o : outcomes) {
+            if (o.error == null) ok.add(o);
+        }
+        if (!ok.isEmpty()) {
+            double[] min = new double[6];
+            double[] max = new double[6];
+            double[] sum = new double[6];
+            for (int i = 0; i < ok.size(); i++) {
+                double[] v = ok.get(i).values();
+                for (int j = 0; j < v.length; j++) {
+                    min[j] = i == 0 ? v[j] : Math.min(min[j], v[j]);
+                    max[j] = i == 0 ? v[j] : Math.max(max[j], v[j]);
+                    sum[j] += v[j];
+                }
+            }
+            for (int j = 0; j < sum.length; j++) {
+                sum[j] /= ok.size();
+            }
+            sb.append(summaryRow("mean", sum));
+            sb.append(summaryRow("min", min));
+            sb.append(summaryRow("max", max));
+        }
+        sb.append(String.format("%d of %d runs failed%n", outcomes.size() - ok.size(), outcomes.size()));
+        return sb.toString();
+    }
+
+    private static String summaryRow(String label, double[] v) {
+        return String.format("%-22s %8.1f%% %6.1f %6.1f %9.1f %8.1fs %7.1fs%n", label, v[0], v[1], v[2], v[3], v[4] / 1000, v[5] / 1000);
+    }
+
+    private static class EvaluateTask extends RecursiveTask<List<Outcome>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Scenario> scenarios;
+        private final int from;
+        private final int to;
+
+        private EvaluateTask(List<Scenario> scenarios, int from, int to) {
+            this.scenarios = scenarios;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Outcome> compute() {
+            if (to - from == 1) {
+                List<Outcome> res = new ArrayList<>();
+                res.add(run(scenarios.get(from)));
+                return res;
+            }
+
+            int mid = (from + to) >>> 1;
+            EvaluateTask left = new EvaluateTask(scenarios, from, mid);
+            left.fork();
+            List<Outcome> res = new EvaluateTask(scenarios, mid, to).compute();
+            List<Outcome> leftRes = left.join();
+            leftRes.addAll(res);
+            return leftRes;
+        }
+    }
+
+    /**
+     * One exploration to run: an arena, either a map from maps/, one made by a MapGenerator from a seed or one from a
+     * MapArchive, and the limits to run it with.
+     */
+    public static class Scenario {
+        private final String mapName;
+        private final MapGenerator generator;   // null if the map is loaded from disk
+        private final long seed;
+        private final MapArchive archive;       // null if the map is not from an archive
+        private final int index;
+        private final int timeLimit;            // in seconds of robot time
+        private final int coveragePercent;
+        private final int speed;                // delay per movement in ms of robot time, the robot's default if < 0
+        private ExplorationAlgo.Strategy strategy;      // the ExplorationAlgo's default if null
+
+        public Scenario(String mapName, int timeLimit, int coveragePercent, int speed) {
+            this(mapName, null, 0, null, 0, timeLimit, coveragePercent, speed);
+        }
+
+        public Scenario(MapGenerator generator, long seed, int timeLimit, int coveragePercent, int speed) {
+            this("seed " + Long.toHexString(seed), generator, seed, null, 0, timeLimit, coveragePercent, speed);
+        }
+
+        public Scenario(MapArchive archive, int index, int timeLimit, int coveragePercent, int speed) {
+            this("archive #" + index, null, 0, archive, index, timeLimit, coveragePercent, speed);
+        }
+
+        private Scenario(String mapName, MapGenerator generator, long seed, MapArchive archive, int index, int timeLimit,
+                         int coveragePercent, int speed) {
+            this.mapName = mapName;
+            this.generator = generator;
+            this.seed = seed;
+            this.archive = archive;
+            this.index = index;
+            this.timeLimit = timeLimit;
+            this.coveragePercent = coveragePercent;
+            this.speed = speed;
+        }
+
+        public String getMapName() {
+            return mapName;
+        }
+
+        public void setStrategy(ExplorationAlgo.Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        /**
+         * Returns an empty map of the arena's size.
+         */
+        Map newMap(Robot bot) {
+            if (archive != null) return new Map(bot, archive.getRows(), archive.getCols());
+            return generator == null ? new Map(bot) : new Map(bot, generator.getRows(), generator.getCols());
+        }
+
+        /**
+         * Loads the arena into realMap and clears exploredMap.
+         */
+        void load(Map realMap, Map exploredMap) {
+            if (archive != null) {
+                archive.load(index, realMap, exploredMap);
+            } else if (generator == null) {
+                loadMapFromDisk(realMap, mapName, exploredMap);
+            } else {
+                generator.generate(realMap, seed, exploredMap);
+            }
+        }
+    }
+
+    /**
+     * Result of one Scenario. Moves, turns and times are in robot time and only count the exploration, except
+     * fastestPathMillis.
+     */
+    public static class Outcome {
+        private final Scenario scenario;
+        private final int cells;
+        private int explored;
+        private int moves;
+        private int turns;
+        private int surfaces;                   // obstacle surfaces imaged
+        private long exploreMillis;
+        private long fastestPathMillis = -1;
+        private String error;
+
+        private Outcome(Scenario scenario, int cells) {
+            this.scenario = scenario;
+            this.cells = cells;
+        }
+
+        private void record(Map exploredMap, Robot bot, VirtualClock clock) {
+            explored = exploredMap.getExploredCount();
+            moves = bot.getMoveCount();
+            turns = bot.getTurnCount();
+            HashSet<String> imaged = new HashSet<>();
+            for (ObsSurface s : exploredMap.getSurfaceCoverage()) {
+                imaged.add(s.toString());
+            }
+            for (ObsSurface s : exploredMap.getNotAccessibleSurfaces()) {
+                imaged.remove(s.toString());
+            }
+            surfaces = imaged.size();
+            exploreMillis = clock.currentTimeMillis();
+        }
+
+        public Scenario getScenario() {
+            return scenario;
+        }
+
+        public double getCoverage() {
+            return explored * 100.0 / cells;
+        }
+
+        public int getMoves() {
+            return moves;
+        }
+
+        public int getTurns() {
+            return turns;
+        }
+
+        public int getSurfaces() {
+            return surfaces;
+        }
+
+        public long getExploreMillis() {
+            return exploreMillis;
+        }
+
+        public long getFastestPathMillis() {
+            return fastestPathMillis;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        private double[] values() {
+            return new double[]{getCoverage(), moves, turns, surfaces, exploreMillis, fastestPathMillis};
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s %8.1f%% %6d %6d %9d %8.1fs %7.1fs  %s", scenario.mapName, getCoverage(), moves, turns, surfaces,
+                    exploreMillis / 1000.0, fastestPathMillis / 1000.0, error == null ? "OK" : error);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package simulator;
+
+import algorithms.ExplorationAlgo;
+import map.Map;
+import map.MapConstants;
+import robot.Robot;
+import robot.RobotConstants;
+import utils.MapArchive;
+import utils.MapGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// @formatter:off
+/**
+ * Runs exploration and the fastest path on maps from disk without a display, for regression testing.
+ *
+ * Every run has its own robot on a VirtualClock, so movements take no real time while the exploration time limit
+ * still sees the time they would have taken. The maps are headless and take their images on repaint() instead of on
+ * paint. Runs are spread over -threads cores by an ExplorationEvaluator.
+ *
+ * Usage: HeadlessSimulator [-runs N] [-time SECONDS] [-coverage PERCENT] [-speed MS] [-threads N] [-strategy S] [-v]
+ *                          [-generate N [-size ROWSxCOLS] [-density D] [-clustering C] [-seed S]]
+ *                          [-archive FILE] [-save FILE] [MAP ...]
+ *
+ * MAP is a file name in maps/ without ".txt". All maps are run if none are given and nothing is generated or read
+ * from an archive. -generate runs N arenas from a MapGenerator instead, seeded from S, without writing them to disk.
+ * -archive runs every arena of a MapArchive file. -strategy sets the ExplorationAlgo.Strategy, e.g. nearest_cell.
+ * Output of the algorithms is hidden unless -v is set; a table with one line per run and a summary is printed.
+ *
+ * -save writes the arenas to a MapArchive file instead of running them, e.g. to generate a corpus once and run it
+ * many times with -archive. The arenas must all have the same size.
+ */
+// @formatter:on
+
+public class HeadlessSimulator {
+    private int runs = 1;
+    private int timeLimit = 3600;           // in seconds of robot time
+    private int coveragePercent = 100;
+    private int speed = -1;                 // delay per movement in ms of robot time, the robot's default if < 0
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean verbose = false;
+    private final List<String> maps = new ArrayList<>();
+    private int generate = 0;               // num of random arenas to run instead of the maps
+    private int rows = MapConstants.MAP_ROWS;
+    private int cols = MapConstants.MAP_COLS;
+    private double density = 0.1;
+    private double clustering = 0.5;
+    private long seed = 0;
+    private String archiveFile;             // MapArchive to run, if any
+    private String saveFile;                // MapArchive to write the arenas to instead of running them
+    private ExplorationAlgo.Strategy strategy;      // the ExplorationAlgo's default if null
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        HeadlessSimulator sim = new HeadlessSimulator();
+        try {
+            sim.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: HeadlessSimulator [-runs N] [-time SECONDS] [-coverage PERCENT] [-speed MS] [-threads N] [-strategy S] [-v]");
+            System.err.println("                         [-generate N [-size ROWSxCOLS] [-density D] [-clustering C] [-seed S]]");
+            System.err.println("                         [-archive FILE] [-save FILE] [MAP ...]");
+            System.exit(2);
+        }
+
+        try {
+            System.exit(sim.runAll() ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-runs":
+                    runs = parseValue(args, ++i);
+                    break;
+                case "-time":
+                    timeLimit = parseValue(args, ++i);
+                    break;
+                case "-coverage":
+                    coveragePercent = parseValue(args, ++i);
+                    break;
+                case "-speed":
+                    speed = parseValue(args, ++i);
+                    break;
+                case "-threads":
+                    threads = parseValue(args, ++i);
+                    break;
+                case "-generate":
+                    generate = parseValue(args, ++i);
+                    break;
+                case "-size":
+                    String[] size = parseString(args, ++i).split("x");
+                    if (size.length != 2) throw new IllegalArgumentException("Size must be ROWSxCOLS: " + args[i]);
+                    rows = parseValue(size, 0);
+                    cols = parseValue(size, 1);
+                    break;
+                case "-density":
+                    density = parseFraction(args, ++i);
+                    break;
+                case "-clustering":
+                    clustering = parseFraction(args, ++i);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(parseString(args, ++i));
+                    break;
+                case "-archive":
+                    archiveFile = parseString(args, ++i);
+                    break;
+                case "-save":
+                    saveFile = parseString(args, ++i);
+                    break;
+                case "-strategy":
+                    try {
+                        strategy = ExplorationAlgo.Strategy.valueOf(parseString(args, ++i).toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown strategy " + args[i] + ", expected one of " + Arrays.toString(ExplorationAlgo.Strategy.values()));
+                    }
+                    break;
+                case "-v":
+                    verbose = true;
+                    break;
+                default:
+                    if (args[i].startsWith("-")) throw new IllegalArgumentException("Unknown option " + args[i]);
+                    maps.add(args[i]);
+            }
+        }
+
+        if (maps.isEmpty() && generate == 0 && archiveFile == null) {
+            File[] files = new File("maps").listFiles((dir, name) -> name.endsWith(".txt"));
+            if (files == null) throw new IllegalArgumentException("No maps/ directory");
+            Arrays.sort(files);
+            for (File f : files) {
+                maps.add(f.getName().substring(0, f.getName().length() - 4));
+            }
+        }
+    }
+
+    private static String parseString(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int parseValue(String[] args, int i) {
+        try {
+            return Integer.parseInt(parseString(args, i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + args[i]);
+        }
+    }
+
+    private static double parseFraction(String[] args, int i) {
+        try {
+            return Double.parseDouble(parseString(args, i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + args[i]);
+        }
+    }
+
+    /**
+     * Runs every map the given number of times, or saves the maps if -save is set. Returns false if any run failed.
+     */
+    private boolean runAll() throws IOException {
+        MapArchive archive = archiveFile == null ? null : MapArchive.open(Paths.get(archiveFile));
+        try {
+            if (saveFile != null) {
+                save(arenas(archive));
+                return true;
+            }
+            return run(archive);
+        } finally {
+            if (archive != null) archive.close();
+        }
+    }
+
+    /**
+     * Returns one scenario per arena: the maps, then the generated arenas, then the arenas of the archive.
+     */
+    private List<ExplorationEvaluator.Scenario> arenas(MapArchive archive) {
+        List<ExplorationEvaluator.Scenario> arenas = new ArrayList<>();
+        for (String name : maps) {
+            arenas.add(new ExplorationEvaluator.Scenario(name, timeLimit, coveragePercent, speed));
+        }
+        if (generate > 0) {
+            MapGenerator generator = new MapGenerator(rows, cols);
+            generator.setDensity(density);
+            generator.setClustering(clustering);
+            generator.seeds(seed).limit(generate).forEach(s ->
+                    arenas.add(new ExplorationEvaluator.Scenario(generator, s, timeLimit, coveragePercent, speed)));
+        }
+        if (archive != null) {
+            for (int i = 0; i < archive.size(); i++) {
+                arenas.add(new ExplorationEvaluator.Scenario(archive, i, timeLimit, coveragePercent, speed));
+            }
+        }
+        for (ExplorationEvaluator.Scenario arena : arenas) {
+            arena.setStrategy(strategy);
+        }
+        return arenas;
+    }
+
+    /**
+     * Writes the arenas to the -save archive.
+     */
+    private void save(List<ExplorationEvaluator.Scenario> arenas) throws IOException {
+        if (arenas.isEmpty()) throw new IOException("No arenas to save");
+
+        Robot bot = new Robot(RobotConstants.START_ROW, RobotConstants.START_COL, false);
+        PrintStream out = System.out;
+        if (!verbose) System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Map first = arenas.get(0).newMap(bot);
+        try (MapArchive.Writer writer = new MapArchive.Writer(Paths.get(saveFile), first.getRows(), first.getCols())) {
+            for (ExplorationEvaluator.Scenario arena : arenas) {
+                Map realMap = arena.newMap(bot);
+                arena.load(realMap, arena.newMap(bot));
+                writer.add(realMap);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot save arenas of different sizes to one archive: " + e.getMessage());
+        } finally {
+            System.setOut(out);
+        }
+        out.printf("Saved %d arenas of %d x %d to %s%n", arenas.size(), first.getRows(), first.getCols(), saveFile);
+    }
+
+    /**
+     * Runs every arena the given number of times. Returns false if any run failed.
+     */
+    private boolean run(MapArchive archive) {
+        List<ExplorationEvaluator.Scenario> arenas = arenas(archive);
+        List<ExplorationEvaluator.Scenario> scenarios = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            for (int j = 0; j < maps.size(); j++) {
+                scenarios.add(arenas.get(j));
+            }
+        }
+        for (int j = maps.size(); j < arenas.size(); j++) {
+            for (int i = 0; i < runs; i++) {
+                scenarios.add(arenas.get(j));
+            }
+        }
+
+        PrintStream out = System.out;
+        ExplorationEvaluator evaluator = new ExplorationEvaluator(threads);
+        List<ExplorationEvaluator.Outcome> outcomes;
+        long begin = System.nanoTime();
+        if (!verbose) System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            outcomes = evaluator.evaluate(scenarios);
+        } finally {
+            System.setOut(out);
+            evaluator.shutdown();
+        }
+        long millis = (System.nanoTime() - begin) / 1000000;
+
+        out.print(ExplorationEvaluator.summarise(outcomes));
+        out.printf("%d runs on %d threads in %d ms (%.0f runs/min)%n", outcomes.size(), threads, millis, outcomes.size() * 60000.0 / Math.max(1, millis));
+
+        for (ExplorationEvaluator.Outcome o : outcomes) {
+            if (o.getError() != null) return false;
+        }
+        return true;
+    }
+}
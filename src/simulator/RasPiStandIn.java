@@ -0,0 +1,322 @@
+package simulator;
+
+import algorithms.ExplorationAlgo;
+import map.Map;
+import robot.Robot;
+import robot.RobotConstants;
+import robot.RobotConstants.MOVEMENT;
+import utils.CommMgr;
+import utils.MapDescriptor;
+import utils.VirtualClock;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// @formatter:off
+/**
+ * Local stand-in for the RasPi, so the real-bot code path can run without the hardware. It plays the Arduino and the
+ * Android tablet on one TCP connection, with the arena taken from a real map.
+ *
+ * Arduino: every INSTR message is parsed into movements (the MOVEMENT.print() strings, W%03d runs and the older single
+ *          digit runs of moveForwardMultiple()) and applied to a shadow robot. The reply is one SDATA message with
+ *          the sensor values at the new pose, computed by the same Sensor code as the simulator. One SDATA is also
+ *          sent on connecting, for the calibration at the start of exploration.
+ * Android: EX_START and FP_START are sent on connecting; CommMgr keeps them queued until they are asked for.
+ * Camera:  TAKE_IMAGE messages are only counted.
+ *
+ * Every SDATA reply is delayed by latency + a random 0..jitter ms, plus moveTime ms per movement executed. With
+ * -noise P, each sensor value is replaced by a random reading (-1 or 1 up to the sensor's range) with probability P.
+ *
+ * Usage: RasPiStandIn MAP [-port P] [-latency MS] [-jitter MS] [-move MS] [-noise P] [-seed S] [-explore] [-v]
+ *
+ * Without -explore it serves on the port (default 8080) until killed; run the Simulator with
+ * -Dmdp.rpi.host=localhost and realRun set. With -explore it also runs a real-bot exploration against itself in this
+ * JVM and prints the time taken, the message counts and the explored cells that disagree with the map.
+ */
+// @formatter:on
+
+public class RasPiStandIn {
+    private final Map realMap;
+    private final Robot shadow;             // where the real robot is
+    private final Map scratchMap;           // what the shadow robot's sensors write to, not used
+    private ServerSocket server;
+    private long latency = 0;               // in ms
+    private long jitter = 0;                // in ms
+    private long moveTime = 0;              // in ms per movement
+    private double noise = 0;               // probability of a random sensor value
+    private Random rnd = new Random(0);
+    private final AtomicInteger instructions = new AtomicInteger();
+    private final AtomicInteger movements = new AtomicInteger();
+    private final AtomicInteger botPosUpdates = new AtomicInteger();
+    private final AtomicInteger mapUpdates = new AtomicInteger();
+    private final AtomicInteger mapDeltas = new AtomicInteger();
+    private final AtomicInteger sensorReplies = new AtomicInteger();
+    private final AtomicInteger images = new AtomicInteger();
+
+    public RasPiStandIn(Map realMap) {
+        this.realMap = realMap;
+        this.shadow = new Robot(RobotConstants.START_ROW, RobotConstants.START_COL, false);
+        this.shadow.setClock(new VirtualClock());
+        this.shadow.setSpeed(0);
+        this.scratchMap = new Map(shadow, realMap.getRows(), realMap.getCols());
+        this.scratchMap.setHeadless(true);
+    }
+
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    public void setJitter(long jitter) {
+        this.jitter = jitter;
+    }
+
+    public void setMoveTime(long moveTime) {
+        this.moveTime = moveTime;
+    }
+
+    public void setNoise(double noise) {
+        this.noise = noise;
+    }
+
+    public void setSeed(long seed) {
+        this.rnd = new Random(seed);
+    }
+
+    /**
+     * Starts listening on the port (0 = any free port) and serves one connection at a time on a background thread.
+     * Returns the port.
+     */
+    public int start(int port) throws IOException {
+        server = new ServerSocket(port);
+        Thread t = new Thread(this::acceptLoop, "RasPiStandIn");
+        t.setDaemon(true);
+        t.start();
+        return server.getLocalPort();
+    }
+
+    public void stop() throws IOException {
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try (Socket conn = server.accept()) {
+                conn.setTcpNoDelay(true);
+                serve(new BufferedReader(new InputStreamReader(conn.getInputStream())),
+                        new BufferedWriter(new OutputStreamWriter(conn.getOutputStream())));
+            } catch (IOException e) {
+                if (!server.isClosed()) System.out.println("RasPiStandIn --> IOException");
+            }
+        }
+    }
+
+    private void serve(BufferedReader reader, BufferedWriter writer) throws IOException {
+        shadow.setRobotPos(realMap.getStartRow(), realMap.getStartCol());
+        shadow.setRobotDir(RobotConstants.START_DIR);
+
+        reply(writer, sensorData(), 0);
+        reply(writer, CommMgr.EX_START, 0);
+        reply(writer, CommMgr.FP_START, 0);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.equals(CommMgr.INSTRUCTIONS)) {
+                String instr = reader.readLine();
+                if (instr == null) break;
+                instructions.incrementAndGet();
+
+                List<MOVEMENT> moves = parseInstructions(instr);
+                for (MOVEMENT m : moves) {
+                    shadow.move(m, false);
+                }
+                movements.addAndGet(moves.size());
+                reply(writer, sensorData(), moves.size() * moveTime);
+            } else if (line.startsWith(CommMgr.BOT_POS + " ")) {
+                botPosUpdates.incrementAndGet();
+            } else if (line.startsWith(CommMgr.MAP_STRINGS + " ")) {
+                mapUpdates.incrementAndGet();
+            } else if (line.startsWith(CommMgr.MAP_DELTA + " ")) {
+                mapDeltas.incrementAndGet();
+            } else if (line.startsWith(CommMgr.TAKE_IMAGE + " ")) {
+                images.incrementAndGet();
+            }
+        }
+    }
+
+    private void reply(BufferedWriter writer, String msg, long busyTime) throws IOException {
+        long delay = busyTime + latency + (jitter > 0 ? (long) (rnd.nextDouble() * (jitter + 1)) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writer.write(msg + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Returns the SDATA message for the shadow robot's pose, in the order and format Robot.sense() reads.
+     */
+    private String sensorData() {
+        shadow.setSensors();
+        int[] values = shadow.sense(scratchMap, realMap);
+        sensorReplies.incrementAndGet();
+        String[] ids = {"SRFL", "SRFC", "SRFR", "SRLF", "SRLB", "LRR"};
+
+        StringBuilder sb = new StringBuilder(CommMgr.SENSOR_DATA);
+        for (int i = 0; i < ids.length; i++) {
+            int val = values[i];
+            if (noise > 0 && rnd.nextDouble() < noise) {
+                int range = i == 5 ? RobotConstants.SENSOR_LONG_RANGE_H : RobotConstants.SENSOR_SHORT_RANGE_H;
+                val = rnd.nextInt(range + 1);
+                if (val == 0) val = -1;
+            }
+            sb.append(';').append(ids[i]).append('_').append(val);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses an instruction stream into movements. Unknown characters are skipped.
+     */
+    static List<MOVEMENT> parseInstructions(String instr) {
+        List<MOVEMENT> moves = new ArrayList<>();
+        int i = 0;
+        outer:
+        while (i < instr.length()) {
+            for (MOVEMENT m : MOVEMENT.values()) {
+                if (m == MOVEMENT.FORWARD || m == MOVEMENT.ERROR) continue;
+                if (instr.startsWith(MOVEMENT.print(m), i)) {
+                    moves.add(m);
+                    i += MOVEMENT.print(m).length();
+                    continue outer;
+                }
+            }
+
+            char c = instr.charAt(i);
+            int count = 0;
+            if (c == 'W' && i + 4 <= instr.length() && isDigits(instr, i + 1, i + 4)) {
+                count = Integer.parseInt(instr.substring(i + 1, i + 4));
+                i += 4;
+            } else if (Character.isDigit(c)) {
+                count = c == '0' ? 10 : c - '0';        // see Robot.moveForwardMultiple()
+                i++;
+            } else {
+                i++;
+            }
+            for (int k = 0; k < count; k++) {
+                moves.add(MOVEMENT.FORWARD);
+            }
+        }
+        return moves;
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isDigit(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    public String getStats() {
+        return String.format("%d INSTR messages (%d movements), %d SDATA replies, %d BOT_POS, %d MAP, %d MDELTA, %d IMG",
+                instructions.get(), movements.get(), sensorReplies.get(), botPosUpdates.get(), mapUpdates.get(),
+                mapDeltas.get(), images.get());
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        String mapName = null;
+        int port = 8080;
+        long latency = 0, jitter = 0, moveTime = 0, seed = 0;
+        double noise = 0;
+        boolean explore = false, verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "-latency":
+                    latency = Long.parseLong(args[++i]);
+                    break;
+                case "-jitter":
+                    jitter = Long.parseLong(args[++i]);
+                    break;
+                case "-move":
+                    moveTime = Long.parseLong(args[++i]);
+                    break;
+                case "-noise":
+                    noise = Double.parseDouble(args[++i]);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-explore":
+                    explore = true;
+                    break;
+                case "-v":
+                    verbose = true;
+                    break;
+                default:
+                    mapName = args[i];
+            }
+        }
+        if (mapName == null) {
+            System.err.println("Usage: RasPiStandIn MAP [-port P] [-latency MS] [-jitter MS] [-move MS] [-noise P] [-seed S] [-explore] [-v]");
+            System.exit(2);
+        }
+
+        PrintStream out = System.out;
+        if (!verbose) System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Robot bot = new Robot(RobotConstants.START_ROW, RobotConstants.START_COL, true);
+        Map realMap = new Map(bot);
+        Map exploredMap = new Map(bot);
+        MapDescriptor.loadMapFromDisk(realMap, mapName, exploredMap);
+
+        RasPiStandIn standIn = new RasPiStandIn(realMap);
+        standIn.setLatency(latency);
+        standIn.setJitter(jitter);
+        standIn.setMoveTime(moveTime);
+        standIn.setNoise(noise);
+        standIn.setSeed(seed);
+        port = standIn.start(explore ? 0 : port);
+        out.println("RasPi stand-in for " + mapName + " on port " + port);
+
+        if (!explore) {
+            Thread.currentThread().join();
+        }
+
+        CommMgr comm = CommMgr.getCommMgr();
+        comm.openConnection("localhost", port);
+        exploredMap.setHeadless(true);
+        long begin = System.nanoTime();
+        new ExplorationAlgo(exploredMap, new Map(bot), bot, exploredMap.getNumCells(), 3600).runExploration();
+        long millis = (System.nanoTime() - begin) / 1000000;
+        comm.closeConnection();
+        standIn.stop();
+
+        out.printf("Exploration took %d ms, %d/%d cells explored, %d moves, %d turns%n", millis, exploredMap.getExploredCount(),
+                exploredMap.getNumCells(), bot.getMoveCount(), bot.getTurnCount());
+        out.println(standIn.getStats());
+
+        int wrong = 0;
+        for (int r = 0; r < realMap.getRows(); r++) {
+            for (int c = 0; c < realMap.getCols(); c++) {
+                if (exploredMap.isExploredCell(r, c) && exploredMap.isObstacleCell(r, c) != realMap.isObstacleCell(r, c)) {
+                    wrong++;
+                }
+            }
+        }
+        out.println(wrong + " explored cells disagree with the map");
+        System.exit(0);
+    }
+}
@@ -3,7 +3,6 @@ package simulator;
 import algorithms.ExplorationAlgo;
 import algorithms.FastestPathAlgo;
 import map.Map;
-import map.MapConstants;
 import robot.Robot;
 import robot.RobotConstants;
 import utils.CommMgr;
@@ -34,7 +33,10 @@ public class Simulator {
     private static Map exploredMap = null;          // exploration map
 
     private static int timeLimit = 3600;            // time limit
-    private static int coverageLimit = 300;         // coverage limit
+    private static int coverageLimit;               // coverage limit, the whole arena unless set
+    private static final int NBV_MAX_PERCENT = 90;  // coverage limits below this explore with NEXT_BEST_VIEW
+    private static int waypointRow = -1;            // waypoint of the fastest path run, -1 if none
+    private static int waypointCol = -1;
 
     private static final CommMgr comm = CommMgr.getCommMgr();
     private static final boolean realRun = false;
@@ -54,6 +56,7 @@ public class Simulator {
 
         exploredMap = new Map(bot);
         exploredMap.setAllUnexplored();
+        coverageLimit = exploredMap.getNumCells();
 
         displayEverything();
     }
@@ -168,21 +171,26 @@ public class Simulator {
         // FastestPath Class for Multithreading
         class FastestPath extends SwingWorker<Integer, String> {
             protected Integer doInBackground() throws Exception {
-                bot.setRobotPos(RobotConstants.START_ROW, RobotConstants.START_COL);
+                bot.setRobotPos(exploredMap.getStartRow(), exploredMap.getStartCol());
                 exploredMap.repaint();
 
                 if (realRun) {
-                    while (true) {
-                        System.out.println("Waiting for FP_START...");
-                        String msg = comm.recvMsg();
-                        if (msg.equals(CommMgr.FP_START)) break;
-                    }
+                    System.out.println("Waiting for FP_START...");
+                    comm.recvMsg(CommMgr.FP_START);
+                    String waypoint = comm.pollMsg(CommMgr.WAYPOINT);
+                    if (waypoint != null) setWaypoint(waypoint.substring(CommMgr.WAYPOINT.length() + 1));
                 }
 
                 FastestPathAlgo fastestPath;
                 fastestPath = new FastestPathAlgo(exploredMap, bot);
 
-                fastestPath.runFastestPath(RobotConstants.GOAL_ROW, RobotConstants.GOAL_COL);
+                if (waypointRow >= 0) {
+                    if (fastestPath.runFastestPath(waypointRow, waypointCol, exploredMap.getGoalRow(), exploredMap.getGoalCol()) == null) {
+                        System.out.println("Waypoint (" + waypointRow + ", " + waypointCol + ") or goal unreachable!");
+                    }
+                } else {
+                    fastestPath.runFastestPath(exploredMap.getGoalRow(), exploredMap.getGoalCol());
+                }
 
                 return 222;
             }
@@ -193,8 +201,8 @@ public class Simulator {
             protected Integer doInBackground() throws Exception {
                 int row, col;
 
-                row = RobotConstants.START_ROW;
-                col = RobotConstants.START_COL;
+                row = exploredMap.getStartRow();
+                col = exploredMap.getStartCol();
 
                 bot.setRobotPos(row, col);
                 exploredMap.repaint();
@@ -207,7 +215,7 @@ public class Simulator {
                 }
 
                 exploration.runExploration();
-                generateMapDescriptor(exploredMap);
+                printMapDescriptor(exploredMap);
 
                 if (realRun) {
                     new FastestPath().execute();
@@ -233,13 +241,14 @@ public class Simulator {
         // TimeExploration Class for Multithreading
         class TimeExploration extends SwingWorker<Integer, String> {
             protected Integer doInBackground() throws Exception {
-                bot.setRobotPos(RobotConstants.START_ROW, RobotConstants.START_COL);
+                bot.setRobotPos(exploredMap.getStartRow(), exploredMap.getStartCol());
                 exploredMap.repaint();
 
                 ExplorationAlgo timeExplo = new ExplorationAlgo(exploredMap, realMap, bot, coverageLimit, timeLimit);
+                timeExplo.setStrategy(explorationStrategy());
                 timeExplo.runExploration();
 
-                generateMapDescriptor(exploredMap);
+                printMapDescriptor(exploredMap);
 
                 return 333;
             }
@@ -280,13 +289,14 @@ public class Simulator {
         // CoverageExploration Class for Multithreading
         class CoverageExploration extends SwingWorker<Integer, String> {
             protected Integer doInBackground() throws Exception {
-                bot.setRobotPos(RobotConstants.START_ROW, RobotConstants.START_COL);
+                bot.setRobotPos(exploredMap.getStartRow(), exploredMap.getStartCol());
                 exploredMap.repaint();
 
                 ExplorationAlgo coverageExplo = new ExplorationAlgo(exploredMap, realMap, bot, coverageLimit, timeLimit);
+                coverageExplo.setStrategy(explorationStrategy());
                 coverageExplo.runExploration();
 
-                generateMapDescriptor(exploredMap);
+                printMapDescriptor(exploredMap);
 
                 return 444;
             }
@@ -306,7 +316,7 @@ public class Simulator {
                 coverageSaveButton.addMouseListener(new MouseAdapter() {
                     public void mousePressed(MouseEvent e) {
                         coverageExploDialog.setVisible(false);
-                        coverageLimit = (int) ((Integer.parseInt(coverageTF.getText())) * MapConstants.MAP_SIZE / 100.0);
+                        coverageLimit = (int) ((Integer.parseInt(coverageTF.getText())) * exploredMap.getNumCells() / 100.0);
                         new CoverageExploration().execute();
                         CardLayout cl = ((CardLayout) _mapCards.getLayout());
                         cl.show(_mapCards, "EXPLORATION");
@@ -326,11 +336,68 @@ public class Simulator {
         formatButton(btn_FastestPath);
         btn_FastestPath.addMouseListener(new MouseAdapter() {
             public void mousePressed(MouseEvent e) {
-                CardLayout cl = ((CardLayout) _mapCards.getLayout());
-                cl.show(_mapCards, "EXPLORATION");
-                new FastestPath().execute();
+                JDialog fastestPathDialog = new JDialog(_appFrame, "Fastest Path", true);
+                fastestPathDialog.setSize(400, 60);
+                fastestPathDialog.setLayout(new FlowLayout());
+                final JTextField waypointTF = new JTextField(5);
+                JButton fastestPathButton = new JButton("Run");
+
+                fastestPathButton.addMouseListener(new MouseAdapter() {
+                    public void mousePressed(MouseEvent e) {
+                        fastestPathDialog.setVisible(false);
+                        setWaypoint(waypointTF.getText());
+                        CardLayout cl = ((CardLayout) _mapCards.getLayout());
+                        cl.show(_mapCards, "EXPLORATION");
+                        new FastestPath().execute();
+                    }
+                });
+
+                fastestPathDialog.add(new JLabel("Waypoint (ROW,COL, blank for none): "));
+                fastestPathDialog.add(waypointTF);
+                fastestPathDialog.add(fastestPathButton);
+                fastestPathDialog.setVisible(true);
             }
         });
         _buttons.add(btn_FastestPath);
     }
+
+    /**
+     * Returns the exploration strategy for the current coverage limit. NEXT_BEST_VIEW reaches a partial coverage for
+     * less move and turn cost than FRONTIER, but costs more from about 95% of the arena up and leaves the way to GOAL
+     * unexplored more often.
+     */
+    private static ExplorationAlgo.Strategy explorationStrategy() {
+        if (coverageLimit * 100 < NBV_MAX_PERCENT * exploredMap.getNumCells()) {
+            return ExplorationAlgo.Strategy.NEXT_BEST_VIEW;
+        }
+        return ExplorationAlgo.Strategy.FRONTIER;
+    }
+
+    /**
+     * Sets the waypoint of the fastest path run from "row,col", or clears it if the string is blank.
+     */
+    private static void setWaypoint(String waypoint) {
+        waypointRow = -1;
+        waypointCol = -1;
+        if (waypoint.trim().isEmpty()) return;
+
+        String[] rowCol = waypoint.split(",");
+        int row = Integer.parseInt(rowCol[0].trim());
+        int col = Integer.parseInt(rowCol[1].trim());
+        if (!exploredMap.checkValidCoordinates(row, col)) {
+            System.out.println("Waypoint (" + row + ", " + col + ") is outside the arena, ignored.");
+            return;
+        }
+        waypointRow = row;
+        waypointCol = col;
+    }
+
+    /**
+     * Prints the map descriptor strings of a map.
+     */
+    private static void printMapDescriptor(Map map) {
+        String[] mapStrings = generateMapDescriptor(map);
+        System.out.println("P1: " + mapStrings[0]);
+        System.out.println("P2: " + mapStrings[1]);
+    }
 }
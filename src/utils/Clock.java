@@ -0,0 +1,27 @@
+package utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of time for the robot and the algorithms. SYSTEM is the wall clock; a VirtualClock lets a simulation run at
+ * CPU speed while time limits still see the time the movements would have taken.
+ */
+
+public interface Clock {
+    Clock SYSTEM = new Clock() {
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        public void sleep(long millis) throws InterruptedException {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+    };
+
+    long currentTimeMillis();
+
+    /**
+     * Waits for the given time to pass on this clock.
+     */
+    void sleep(long millis) throws InterruptedException;
+}
@@ -3,10 +3,17 @@ package utils;
 import java.io.*;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Communication manager to communicate with the different parts of the system via the RasPi.
  *
+ * A reader thread queues every received message and a writer thread sends queued messages, so the algorithms never
+ * block on the socket except to wait for a message they need. recvMsg(type) picks the next message of one type
+ * (SENSOR_DATA, EX_START, FP_START, ...) and leaves the others queued.
+ *
  * @author SuyashLakhotia
  */
 
@@ -14,38 +21,49 @@ public class CommMgr {
 
     public static final String EX_START = "EX_START";       // Android --> PC
     public static final String FP_START = "FP_START";       // Android --> PC
+    public static final String WAYPOINT = "WP";             // Android --> PC, "WP;row,col"
     public static final String MAP_STRINGS = "MAP";         // PC --> Android
+    public static final String MAP_DELTA = "MDELTA";        // PC --> Android
     public static final String BOT_POS = "BOT_POS";         // PC --> Android
     public static final String BOT_START = "BOT_START";     // PC --> Arduino
     public static final String INSTRUCTIONS = "INSTR";      // PC --> Arduino
     public static final String SENSOR_DATA = "SDATA";       // Arduino --> PC
+    public static final String TAKE_IMAGE = "IMG";          // PC --> RasPi
 
     private static CommMgr commMgr = null;
     private static Socket conn = null;
 
+    private static final String CLOSE = "";                    // tells the writer thread to stop, real messages end in \n
+
     private BufferedWriter writer;
     private BufferedReader reader;
+    private Thread readerThread;
+    private Thread writerThread;
+    private volatile boolean connected = false;
+    private final LinkedList<String> inbox = new LinkedList<>();                     // received, in arrival order
+    private final LinkedBlockingQueue<String> outbox = new LinkedBlockingQueue<>();  // formatted, waiting to be sent
 
     private CommMgr() {
     }
 
-    public static CommMgr getCommMgr() {
+    public static synchronized CommMgr getCommMgr() {
         if (commMgr == null) {
             commMgr = new CommMgr();
         }
         return commMgr;
     }
 
+    /**
+     * Connects to the RasPi at 192.168.12.1:8080, or at the system properties mdp.rpi.host and mdp.rpi.port if set
+     * (e.g. for RasPiStandIn).
+     */
     public void openConnection() {
         System.out.println("Opening connection...");
 
         try {
-            String HOST = "192.168.12.1";
-            int PORT = 8080;
-            conn = new Socket(HOST, PORT);
-
-            writer = new BufferedWriter(new OutputStreamWriter(new BufferedOutputStream(conn.getOutputStream())));
-            reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+            String HOST = System.getProperty("mdp.rpi.host", "192.168.12.1");
+            int PORT = Integer.getInteger("mdp.rpi.port", 8080);
+            openConnection(HOST, PORT);
 
             System.out.println("openConnection() --> " + "Connection established successfully!");
 
@@ -62,12 +80,45 @@ public class CommMgr {
         System.out.println("Failed to establish connection!");
     }
 
+    /**
+     * Connects to host:port and starts the reader and writer threads. From then on received messages are queued
+     * until they are asked for with recvMsg(), and sendMsg() returns without waiting for the socket.
+     */
+    public void openConnection(String host, int port) throws IOException {
+        conn = new Socket(host, port);
+        conn.setTcpNoDelay(true);
+
+        writer = new BufferedWriter(new OutputStreamWriter(new BufferedOutputStream(conn.getOutputStream())));
+        reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+
+        synchronized (inbox) {
+            inbox.clear();
+        }
+        outbox.clear();
+        connected = true;
+
+        readerThread = new Thread(this::readLoop, "CommMgr-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        writerThread = new Thread(this::writeLoop, "CommMgr-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Sends everything still queued, then closes the connection.
+     */
     public void closeConnection() {
         System.out.println("Closing connection...");
 
         try {
-            reader.close();
+            if (writerThread != null) {
+                outbox.add(CLOSE);
+                writerThread.join(1000);
+            }
+            connected = false;
 
+            // Closing the socket ends the reader thread's readLine(). Closing the reader first would wait for it.
             if (conn != null) {
                 conn.close();
                 conn = null;
@@ -83,53 +134,145 @@ public class CommMgr {
         }
     }
 
+    /**
+     * Queues a message for the writer thread and returns at once. Messages are sent in the order they are queued.
+     */
     public void sendMsg(String msg, String msgType) {
         System.out.println("Sending a message...");
 
-        try {
-            String outputMsg;
-            if (msg == null) {
-                outputMsg = msgType + "\n";
-            } else if (msgType.equals(MAP_STRINGS) || msgType.equals(BOT_POS)) {
-                outputMsg = msgType + " " + msg + "\n";
-            } else {
-                outputMsg = msgType + "\n" + msg + "\n";
-            }
+        String outputMsg;
+        if (msg == null) {
+            outputMsg = msgType + "\n";
+        } else if (msgType.equals(MAP_STRINGS) || msgType.equals(MAP_DELTA) || msgType.equals(BOT_POS) || msgType.equals(TAKE_IMAGE)) {
+            outputMsg = msgType + " " + msg + "\n";
+        } else {
+            outputMsg = msgType + "\n" + msg + "\n";
+        }
 
-            System.out.println("Sending out message:\n" + outputMsg);
-            writer.write(outputMsg);
-            writer.flush();
-        } catch (IOException e) {
-            System.out.println("sendMsg() --> IOException");
-        } catch (Exception e) {
-            System.out.println("sendMsg() --> Exception");
-            System.out.println(e.toString());
+        if (!connected) {
+            System.out.println("sendMsg() --> Not connected");
+            return;
         }
+        System.out.println("Sending out message:\n" + outputMsg);
+        outbox.add(outputMsg);
     }
 
+    /**
+     * Returns the next received message of any type, waiting for one if needed. Returns null if the connection is
+     * closed and nothing is left to read.
+     */
     public String recvMsg() {
+        return recvMsg(null, 0);
+    }
+
+    /**
+     * Returns the next received message of the given type (e.g. SENSOR_DATA), waiting for one if needed. Messages of
+     * other types stay queued for their own readers. Returns null if the connection is closed first.
+     */
+    public String recvMsg(String msgType) {
+        return recvMsg(msgType, 0);
+    }
+
+    /**
+     * Same as recvMsg(msgType), but gives up and returns null after timeout ms (0 = wait forever). A null msgType
+     * matches any message.
+     */
+    public String recvMsg(String msgType, long timeout) {
         System.out.println("Receiving a message...");
 
-        try {
-            StringBuilder sb = new StringBuilder();
-            String input = reader.readLine();
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (inbox) {
+            while (true) {
+                String msg = takeMsg(msgType);
+                if (msg != null) {
+                    System.out.println(msg);
+                    return msg;
+                }
+                if (!connected) return null;
 
-            if (input != null && input.length() > 0) {
-                sb.append(input);
-                System.out.println(sb.toString());
-                return sb.toString();
+                long wait = timeout == 0 ? 0 : deadline - System.currentTimeMillis();
+                if (timeout != 0 && wait <= 0) return null;
+                try {
+                    inbox.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
             }
-        } catch (IOException e) {
-            System.out.println("recvMsg() --> IOException");
-        } catch (Exception e) {
-            System.out.println("recvMsg() --> Exception");
-            System.out.println(e.toString());
         }
+    }
+
+    /**
+     * Returns the next received message of the given type, or null at once if there is none.
+     */
+    public String pollMsg(String msgType) {
+        synchronized (inbox) {
+            return takeMsg(msgType);
+        }
+    }
 
+    /**
+     * Returns the type of a received message: the part before the first ';', or the whole message.
+     */
+    public static String getMsgType(String msg) {
+        int i = msg.indexOf(';');
+        return i < 0 ? msg : msg.substring(0, i);
+    }
+
+    private String takeMsg(String msgType) {
+        Iterator<String> it = inbox.iterator();
+        while (it.hasNext()) {
+            String msg = it.next();
+            if (msgType == null || msgType.equals(getMsgType(msg))) {
+                it.remove();
+                return msg;
+            }
+        }
         return null;
     }
 
+    private void readLoop() {
+        try {
+            String input;
+            while ((input = reader.readLine()) != null) {
+                if (input.length() == 0) continue;
+                synchronized (inbox) {
+                    inbox.add(input);
+                    inbox.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            if (connected) System.out.println("readLoop() --> IOException");
+        } finally {
+            connected = false;
+            synchronized (inbox) {
+                inbox.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes queued messages, flushing once for everything that was queued together.
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                String msg = outbox.take();
+                while (msg != null && !msg.equals(CLOSE)) {
+                    writer.write(msg);
+                    msg = outbox.poll();
+                }
+                writer.flush();
+                if (msg != null) return;
+            }
+        } catch (IOException e) {
+            System.out.println("writeLoop() --> IOException");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public boolean isConnected() {
-        return conn.isConnected();
+        return connected;
     }
 }
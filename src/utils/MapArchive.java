@@ -0,0 +1,172 @@
+package utils;
+
+import map.Map;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// @formatter:off
+/**
+ * A binary file of many arenas of the same size, e.g. written from a MapGenerator, read through a memory mapping.
+ *
+ * Header (6 big endian ints): magic "MDPA", format version, rows, cols, num of maps, 0 (padding)
+ * Maps:   one after another, each ceil(rows * cols / 64) big endian longs of obstacle bits, bit k of long w for the cell
+ *         with index (row * cols + col) w * 64 + k, the same layout as Map.getObstacleWord().
+ *
+ * Every map has the same length, so load() finds a map by its index and copies its bits straight into the Map without
+ * parsing anything.
+ */
+// @formatter:on
+
+public class MapArchive implements Closeable {
+    private static final int MAGIC = 0x4d445041;        // "MDPA"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private final FileChannel channel;
+    private final LongBuffer bits;          // the whole file, as longs
+    private final int rows;
+    private final int cols;
+    private final int words;                // longs per map
+    private final int size;
+
+    private MapArchive(FileChannel channel, LongBuffer bits, int rows, int cols, int size) {
+        this.channel = channel;
+        this.bits = bits;
+        this.rows = rows;
+        this.cols = cols;
+        this.words = (rows * cols + 63) >>> 6;
+        this.size = size;
+    }
+
+    /**
+     * Opens an archive for reading.
+     */
+    public static MapArchive open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) throw new IOException(file + " is not a map archive");
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buf.getInt(0) != MAGIC) throw new IOException(file + " is not a map archive");
+            if (buf.getInt(4) != VERSION) throw new IOException(file + " has unsupported version " + buf.getInt(4));
+
+            int rows = buf.getInt(8);
+            int cols = buf.getInt(12);
+            int size = buf.getInt(16);
+            long expected = HEADER_BYTES + (long) size * ((rows * cols + 63) >>> 6) * 8;
+            if (length < expected) throw new IOException(file + " is truncated");
+            return new MapArchive(channel, buf.asLongBuffer(), rows, cols, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of maps in the archive.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Loads map number index into map and clears explored the same way MapDescriptor.loadMapFromDisk() does.
+     */
+    public void load(int index, Map map, Map explored) {
+        load(index, map);
+        explored.clearAll();
+        explored.setAllUnexplored();
+    }
+
+    /**
+     * Clears map and loads map number index into it. The whole map is left explored.
+     */
+    public void load(int index, Map map) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Map " + index + " of " + size);
+        if (map.getRows() != rows || map.getCols() != cols) {
+            throw new IllegalArgumentException("Map is " + map.getRows() + " x " + map.getCols() + ", expected " + rows + " x " + cols);
+        }
+
+        map.clearAll();
+        map.loadObstacles(bits, HEADER_BYTES / 8 + index * words);
+        map.setAllExplored();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes an archive, one map at a time. The number of maps is written to the header on close().
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int rows;
+        private final int cols;
+        private final ByteBuffer buf;           // one map
+        private int size = 0;
+
+        public Writer(Path file, int rows, int cols) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.rows = rows;
+            this.cols = cols;
+            this.buf = ByteBuffer.allocate(((rows * cols + 63) >>> 6) * 8);
+            writeHeader();
+            channel.position(HEADER_BYTES);
+        }
+
+        /**
+         * Appends the obstacles of map, which must have the archive's size.
+         */
+        public void add(Map map) throws IOException {
+            if (map.getRows() != rows || map.getCols() != cols) {
+                throw new IllegalArgumentException("Map is " + map.getRows() + " x " + map.getCols() + ", expected " + rows + " x " + cols);
+            }
+
+            buf.clear();
+            for (int w = 0; w < buf.capacity() / 8; w++) {
+                buf.putLong(map.getObstacleWord(w));
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            size++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeHeader();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(size).putInt(0);
+            header.flip();
+            long pos = 0;
+            while (header.hasRemaining()) {
+                pos += channel.write(header, pos);
+            }
+        }
+    }
+}
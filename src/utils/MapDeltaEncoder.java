@@ -0,0 +1,110 @@
+package utils;
+
+import map.Map;
+
+// @formatter:off
+/**
+ * Sends the explored map to Android as changes instead of full map descriptors.
+ *
+ * Each update sends only the cells whose state changed since the previous update (see Map.getDirtyCount()) as a
+ * MAP_DELTA message:
+ *
+ *     MDELTA <seq> <cells>
+ *
+ * seq:   1 for the first delta after a full snapshot, then 2, 3, ... so that a lost update can be noticed
+ * cells: one entry per changed cell, concatenated without separators. An entry is the cell index (row * cols + col)
+ *        as a fixed width hex number, wide enough for the last cell of the map (3 digits for the standard arena),
+ *        followed by the new state: 0 = explored & free, 1 = explored obstacle, 2 = unexplored (as in Part 2, the
+ *        obstacle state of unexplored cells is not sent).
+ *
+ * A full MAP snapshot (Part 1 & Part 2 descriptors, as before) is sent instead for the first update, every
+ * fullInterval updates for resync, and whenever the delta would not be shorter than the snapshot.
+ */
+// @formatter:on
+
+public class MapDeltaEncoder {
+    private final int fullInterval;
+    private int seq = -1;           // deltas sent since the last snapshot, -1 if no snapshot has been sent yet
+    private final StringBuilder buf = new StringBuilder();
+
+    public MapDeltaEncoder(int fullInterval) {
+        this.fullInterval = fullInterval;
+    }
+
+    /**
+     * Makes the next update a full snapshot, e.g. after reconnecting.
+     */
+    public void reset() {
+        seq = -1;
+    }
+
+    /**
+     * Sends the changes of map since the last update, or a full snapshot, and clears the map's changed cells. Sends
+     * nothing if no cell changed.
+     */
+    public void sendUpdate(Map map, CommMgr comm) {
+        int changed = map.getDirtyCount();
+        if (changed == 0 && seq >= 0) return;
+
+        int entryLength = hexWidth(map.getNumCells()) + 1;
+        if (seq < 0 || seq >= fullInterval || changed * entryLength >= map.getNumCells() / 2) {
+            buf.setLength(0);
+            MapDescriptor.appendPart1(map, buf);
+            buf.append(' ');
+            MapDescriptor.appendPart2(map, buf);
+            comm.sendMsg(buf.toString(), CommMgr.MAP_STRINGS);
+            seq = 0;
+        } else {
+            seq++;
+            comm.sendMsg(seq + " " + encodeDelta(map), CommMgr.MAP_DELTA);
+        }
+        map.clearDirtyCells();
+    }
+
+    /**
+     * Returns the cells part of a MAP_DELTA message for the changed cells of map.
+     */
+    public static String encodeDelta(Map map) {
+        int width = hexWidth(map.getNumCells());
+        StringBuilder sb = new StringBuilder();
+        for (int i = map.nextDirtyCell(0); i >= 0; i = map.nextDirtyCell(i + 1)) {
+            int row = i / map.getCols();
+            int col = i % map.getCols();
+            for (int shift = (width - 1) * 4; shift >= 0; shift -= 4) {
+                sb.append(Character.forDigit((i >>> shift) & 0xF, 16));
+            }
+            if (!map.isExploredCell(row, col)) {
+                sb.append('2');
+            } else {
+                sb.append(map.isObstacleCell(row, col) ? '1' : '0');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Applies the cells part of a MAP_DELTA message to map. This is what the receiving side does with a delta.
+     */
+    public static void applyDelta(Map map, String cells) {
+        int width = hexWidth(map.getNumCells());
+        for (int p = 0; p + width < cells.length(); p += width + 1) {
+            int i = Integer.parseInt(cells.substring(p, p + width), 16);
+            int row = i / map.getCols();
+            int col = i % map.getCols();
+            char state = cells.charAt(p + width);
+            map.setExploredCell(row, col, state != '2');
+            map.setObstacleCell(row, col, state == '1');
+        }
+    }
+
+    /**
+     * Returns the number of hex digits needed for every cell index of a map with numCells cells.
+     */
+    private static int hexWidth(int numCells) {
+        int width = 1;
+        while ((numCells - 1) >>> (width * 4) != 0) {
+            width++;
+        }
+        return width;
+    }
+}
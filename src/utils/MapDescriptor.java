@@ -1,10 +1,10 @@
 package utils;
 
 import map.Map;
-import map.MapConstants;
 import robot.Robot;
 
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * Helper methods for reading & generating map strings.
@@ -12,6 +12,9 @@ import java.io.*;
  * Part 1: 1/0 represents explored state. All cells are represented.
  * Part 2: 1/0 represents obstacle state. Only explored cells are represented.
  *
+ * Both are encoded and decoded 4 cells at a time straight from the Map's bit planes, with lookup tables for the hex
+ * digits. appendPart1() & appendPart2() write into a caller's StringBuilder, so it can be reused between calls.
+ *
  * @author Suyash Lakhotia
  */
 
@@ -37,8 +40,8 @@ public class MapDescriptor {
 
             String bin = sb.toString();
             int binPtr = 0;
-            for (int row = MapConstants.MAP_ROWS - 1; row >= 0; row--) {
-                for (int col = 0; col < MapConstants.MAP_COLS; col++) {
+            for (int row = map.getRows() - 1; row >= 0; row--) {
+                for (int col = 0; col < map.getCols(); col++) {
                     if (bin.charAt(binPtr) == '1') map.setObstacleCell(row, col, true);
                     binPtr++;
                 }
@@ -54,63 +57,171 @@ public class MapDescriptor {
         }
     }
 
-    /**
-     * Helper method to convert a binary string to a hex string.
-     */
-    private static String binToHex(String bin) {
-        int dec = Integer.parseInt(bin, 2);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int[] REVERSE = new int[16];      // 4 bit value --> the same bits in reverse order
+    private static final int[] NIBBLE = new int[128];      // hex digit --> its value, -1 if not a hex digit
 
-        return Integer.toHexString(dec);
+    static {
+        for (int v = 0; v < 16; v++) {
+            REVERSE[v] = (v & 1) << 3 | (v & 2) << 1 | (v & 4) >> 1 | (v & 8) >> 3;
+        }
+        Arrays.fill(NIBBLE, -1);
+        for (int v = 0; v < 16; v++) {
+            NIBBLE[HEX[v]] = v;
+            NIBBLE[Character.toUpperCase(HEX[v])] = v;
+        }
     }
 
     /**
      * Generates Part 1 & Part 2 map descriptor strings from the passed Map object.
      */
     public static String[] generateMapDescriptor(Map map) {
-        String[] ret = new String[2];
-
-        StringBuilder Part1 = new StringBuilder();
-        StringBuilder Part1_bin = new StringBuilder();
-        Part1_bin.append("11");
-        for (int r = 0; r < MapConstants.MAP_ROWS; r++) {
-            for (int c = 0; c < MapConstants.MAP_COLS; c++) {
-                if (map.getCell(r, c).getIsExplored())
-                    Part1_bin.append("1");
-                else
-                    Part1_bin.append("0");
-
-                if (Part1_bin.length() == 4) {
-                    Part1.append(binToHex(Part1_bin.toString()));
-                    Part1_bin.setLength(0);
-                }
-            }
+        StringBuilder part1 = new StringBuilder(map.getNumCells() / 4 + 2);
+        StringBuilder part2 = new StringBuilder(map.getNumCells() / 4 + 1);
+        appendPart1(map, part1);
+        appendPart2(map, part2);
+        return new String[]{part1.toString(), part2.toString()};
+    }
+
+    /**
+     * Appends the Part 1 string of map to out: "11", the explored bit of every cell row by row from row 0, then
+     * "11", as hex digits of 4 bits each. If the bits do not end on a full digit, the last digit holds the remaining
+     * bits as a number (as Integer.toHexString() does), which takes 2 digits if 5 bits are left and the first is
+     * set.
+     */
+    public static void appendPart1(Map map, StringBuilder out) {
+        int cells = map.getNumCells();
+        out.append(HEX[0xC | exploredBits(map, 0, 2)]);
+
+        int i = 2;
+        for (; i + 4 <= cells; i += 4) {
+            out.append(HEX[exploredBits(map, i, 4)]);
         }
-        Part1_bin.append("11");
-        Part1.append(binToHex(Part1_bin.toString()));
-        System.out.println("P1: " + Part1.toString());
-        ret[0] = Part1.toString();
-
-        StringBuilder Part2 = new StringBuilder();
-        StringBuilder Part2_bin = new StringBuilder();
-        for (int r = 0; r < MapConstants.MAP_ROWS; r++) {
-            for (int c = 0; c < MapConstants.MAP_COLS; c++) {
-                if (map.getCell(r, c).getIsExplored()) {
-                    if (map.getCell(r, c).getIsObstacle())
-                        Part2_bin.append("1");
-                    else
-                        Part2_bin.append("0");
-
-                    if (Part2_bin.length() == 4) {
-                        Part2.append(binToHex(Part2_bin.toString()));
-                        Part2_bin.setLength(0);
+
+        int last = exploredBits(map, i, cells - i) << 2 | 3;
+        if (last > 0xF) out.append(HEX[last >>> 4]);
+        out.append(HEX[last & 0xF]);
+    }
+
+    /**
+     * Appends the Part 2 string of map to out: the obstacle bit of every explored cell row by row from row 0, as hex
+     * digits of 4 bits each. If the bits do not end on a full digit, the last digit holds the remaining bits as a
+     * number.
+     */
+    public static void appendPart2(Map map, StringBuilder out) {
+        int words = (map.getNumCells() + 63) >>> 6;
+        int acc = 0;            // bits not written yet, the oldest one highest
+        int n = 0;              // num of bits in acc
+        for (int w = 0; w < words; w++) {
+            long e = map.getExploredWord(w);
+            long o = map.getObstacleWord(w);
+            for (int k = 0; e != 0; k += 4, e >>>= 4, o >>>= 4) {
+                int en = (int) e & 0xF;
+                if (en == 0xF) {
+                    acc = acc << 4 | REVERSE[(int) o & 0xF];
+                    n += 4;
+                } else {
+                    for (int b = 0; b < 4; b++) {
+                        if ((en & 1 << b) == 0) continue;
+                        acc = acc << 1 | (int) (o >>> b) & 1;
+                        n++;
                     }
                 }
+                while (n >= 4) {
+                    n -= 4;
+                    out.append(HEX[acc >>> n & 0xF]);
+                }
+                acc &= (1 << n) - 1;
             }
         }
-        if (Part2_bin.length() > 0) Part2.append(binToHex(Part2_bin.toString()));
-        System.out.println("P2: " + Part2.toString());
-        ret[1] = Part2.toString();
+        if (n > 0) out.append(HEX[acc]);
+    }
+
+    /**
+     * Sets the explored and obstacle state of every cell of map from Part 1 & Part 2 strings, e.g. as received from
+     * Android or copied from a log. Unexplored cells are left without obstacles.
+     *
+     * @throws IllegalArgumentException if the strings are not descriptors of a map of this size, leaving map unchanged
+     */
+    public static void loadMapDescriptor(Map map, CharSequence part1, CharSequence part2) {
+        int cells = map.getNumCells();
+        int full = (cells + 2) / 4;     // digits of 4 bits before the last, which has (cells + 2) % 4 + 2 bits
+        int digits1 = part1.length();
+        boolean lastIsNumber = (cells + 2) % 4 == 3;    // 5 bits, written as 1 or 2 digits
+        if (digits1 != full + 1 && !(lastIsNumber && digits1 == full + 2)) {
+            throw new IllegalArgumentException("Part 1 has " + digits1 + " digits, expected " + (full + 1));
+        }
+
+        // Check both parts before touching the map, so that a bad descriptor leaves it unchanged.
+        int first = hexValue(part1, 0);
+        if (first >>> 2 != 3) throw new IllegalArgumentException("Part 1 does not start with 11");
+        int numExplored = Integer.bitCount(first & 3);
+        int i = 2;
+        for (int d = 1; i + 4 <= cells; d++, i += 4) {
+            numExplored += Integer.bitCount(hexValue(part1, d));
+        }
+        int last = hexValue(part1, digits1 - 1);
+        if (digits1 == full + 2) last |= hexValue(part1, digits1 - 2) << 4;
+        if ((last & 3) != 3) throw new IllegalArgumentException("Part 1 does not end with 11");
+        numExplored += Integer.bitCount(last >>> 2 & ((1 << (cells - i)) - 1));
+
+        int digits2 = (numExplored + 3) / 4;
+        if (part2.length() != digits2) {
+            throw new IllegalArgumentException("Part 2 has " + part2.length() + " digits, expected " + digits2);
+        }
+        for (int d = 0; d < digits2; d++) {
+            hexValue(part2, d);
+        }
+
+        setExploredBits(map, 0, first, 2);
+        i = 2;
+        for (int d = 1; i + 4 <= cells; d++, i += 4) {
+            setExploredBits(map, i, hexValue(part1, d), 4);
+        }
+        setExploredBits(map, i, last >>> 2, cells - i);
+
+        int cols = map.getCols();
+        int bit = 0;            // index of the next Part 2 bit
+        for (int c = 0; c < cells; c++) {
+            boolean obstacle = false;
+            if (map.isExploredCell(c / cols, c % cols)) {
+                int d = bit >>> 2;
+                int width = d == digits2 - 1 && numExplored % 4 != 0 ? numExplored % 4 : 4;
+                obstacle = (hexValue(part2, d) >>> (width - 1 - (bit & 3)) & 1) != 0;
+                bit++;
+            }
+            map.setObstacleCell(c / cols, c % cols, obstacle);
+        }
+    }
+
+    /**
+     * Returns the explored bits of the n (<= 4) cells from index from, the first cell in the highest bit.
+     */
+    private static int exploredBits(Map map, int from, int n) {
+        if (n == 0) return 0;
+        int w = from >>> 6;
+        int off = from & 63;
+        long v = map.getExploredWord(w) >>> off;
+        if (off + n > 64) v |= map.getExploredWord(w + 1) << (64 - off);
+        return REVERSE[(int) v & ((1 << n) - 1)] >>> (4 - n);
+    }
+
+    /**
+     * Sets the explored state of the n cells from index from to the n low bits of v, the first cell in the highest
+     * bit.
+     */
+    private static void setExploredBits(Map map, int from, int v, int n) {
+        int cols = map.getCols();
+        for (int k = 0; k < n; k++) {
+            int c = from + k;
+            map.setExploredCell(c / cols, c % cols, (v >>> (n - 1 - k) & 1) != 0);
+        }
+    }
 
-        return ret;
+    private static int hexValue(CharSequence s, int i) {
+        char ch = s.charAt(i);
+        int v = ch < 128 ? NIBBLE[ch] : -1;
+        if (v < 0) throw new IllegalArgumentException("Not a hex digit: '" + ch + "' at " + i);
+        return v;
     }
 }
@@ -0,0 +1,167 @@
+package utils;
+
+import algorithms.DistanceField;
+import map.Map;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+// @formatter:off
+/**
+ * Generates random arenas from a seed, as an alternative to loading a map from disk with
+ * MapDescriptor.loadMapFromDisk(). The same seed and settings always give the same arena.
+ *
+ * density:    fraction of the cells that become obstacles (fewer if the START / GOAL zones get in the way)
+ * clustering: probability that a new obstacle is placed next to an existing one instead of anywhere. 0 scatters the
+ *             obstacles, values close to 1 grow them into walls and blocks.
+ *
+ * Obstacles are placed with Map.setObstacleCell(), so the START and GOAL zones always stay free. GOAL is always
+ * reachable from START: an arena without a path is drawn again from the same random sequence, and if MAX_REDRAWS
+ * draws all fail, a corridor along the arena's edge is cleared of obstacles. seeds() gives a stream of seeds from one
+ * master seed for generating many arenas without writing them to disk.
+ */
+// @formatter:on
+
+public class MapGenerator {
+    private static final int[] ROW_MOV = {1, 0, -1, 0};
+    private static final int[] COL_MOV = {0, 1, 0, -1};
+    private static final int MAX_TRIES_PER_OBSTACLE = 20;
+    private static final int MAX_REDRAWS = 100;
+
+    private final int rows;
+    private final int cols;
+    private double density = 0.1;
+    private double clustering = 0.5;
+
+    public MapGenerator(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public void setDensity(double density) {
+        if (density < 0 || density > 1) throw new IllegalArgumentException("density must be within [0, 1]: " + density);
+        this.density = density;
+    }
+
+    public double getDensity() {
+        return density;
+    }
+
+    public void setClustering(double clustering) {
+        if (clustering < 0 || clustering > 1) throw new IllegalArgumentException("clustering must be within [0, 1]: " + clustering);
+        this.clustering = clustering;
+    }
+
+    public double getClustering() {
+        return clustering;
+    }
+
+    /**
+     * Returns an endless stream of seeds derived from masterSeed, one per arena.
+     */
+    public LongStream seeds(long masterSeed) {
+        SplittableRandom rnd = new SplittableRandom(masterSeed);
+        return LongStream.generate(rnd::nextLong);
+    }
+
+    /**
+     * Generates the arena for the given seed into map, which must have the generator's size, and clears explored the
+     * same way MapDescriptor.loadMapFromDisk() does.
+     */
+    public void generate(Map map, long seed, Map explored) {
+        generate(map, seed);
+        explored.clearAll();
+        explored.setAllUnexplored();
+    }
+
+    /**
+     * Clears map and fills it with the arena for the given seed, in which GOAL is reachable from START. The whole map
+     * is left explored.
+     */
+    public void generate(Map map, long seed) {
+        if (map.getRows() != rows || map.getCols() != cols) {
+            throw new IllegalArgumentException("Map is " + map.getRows() + " x " + map.getCols() + ", expected " + rows + " x " + cols);
+        }
+
+        Random rnd = new Random(seed);
+        DistanceField field = new DistanceField(map);
+        for (int i = 0; i < MAX_REDRAWS; i++) {
+            draw(map, rnd);
+            if (isGoalReachable(map, field)) return;
+        }
+        carveCorridor(map);
+    }
+
+    /**
+     * Clears map and places the obstacles of one draw. The whole map is left explored.
+     */
+    private void draw(Map map, Random rnd) {
+        map.clearAll();
+        map.setAllUnexplored();
+
+        int target = (int) Math.round(density * rows * cols);
+        int[] placed = new int[target];
+        int numPlaced = 0;
+        int tries = target * MAX_TRIES_PER_OBSTACLE;
+        while (numPlaced < target && tries-- > 0) {
+            int row;
+            int col;
+            if (numPlaced > 0 && rnd.nextDouble() < clustering) {
+                int from = placed[rnd.nextInt(numPlaced)];
+                int i = rnd.nextInt(4);
+                row = from / cols + ROW_MOV[i];
+                col = from % cols + COL_MOV[i];
+            } else {
+                row = rnd.nextInt(rows);
+                col = rnd.nextInt(cols);
+            }
+
+            if (!map.checkValidCoordinates(row, col) || map.isObstacleCell(row, col)) continue;
+            map.setObstacleCell(row, col, true);
+            if (map.isObstacleCell(row, col)) placed[numPlaced++] = row * cols + col;
+        }
+
+        map.setAllExplored();
+    }
+
+    private static boolean isGoalReachable(Map map, DistanceField field) {
+        field.compute(map.getStartRow(), map.getStartCol());
+        return field.getDistance(map.getGoalRow(), map.getGoalCol()) != DistanceField.UNREACHABLE;
+    }
+
+    /**
+     * Removes every obstacle within the robot's footprint of the path that runs from START along its column to GOAL's
+     * row and then along that row to GOAL.
+     */
+    private static void carveCorridor(Map map) {
+        int radius = map.getWallRadius();
+        int startRow = map.getStartRow();
+        int startCol = map.getStartCol();
+        int goalRow = map.getGoalRow();
+        int goalCol = map.getGoalCol();
+
+        for (int row = Math.min(startRow, goalRow); row <= Math.max(startRow, goalRow); row++) {
+            clearAround(map, row, startCol, radius);
+        }
+        for (int col = Math.min(startCol, goalCol); col <= Math.max(startCol, goalCol); col++) {
+            clearAround(map, goalRow, col, radius);
+        }
+    }
+
+    private static void clearAround(Map map, int row, int col, int radius) {
+        for (int r = row - radius; r <= row + radius; r++) {
+            for (int c = col - radius; c <= col + radius; c++) {
+                if (map.checkValidCoordinates(r, c)) map.setObstacleCell(r, c, false);
+            }
+        }
+    }
+}
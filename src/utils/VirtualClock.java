@@ -0,0 +1,30 @@
+package utils;
+
+/**
+ * Clock that only moves when told to. sleep() returns at once after advancing the clock, so a simulated run takes as
+ * long as its computation while reporting the time its movements would have taken.
+ */
+
+public class VirtualClock implements Clock {
+    private long now;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    public synchronized void sleep(long millis) {
+        advance(millis);
+    }
+
+    public synchronized void advance(long millis) {
+        if (millis > 0) now += millis;
+    }
+}